@@ -0,0 +1,20 @@
+package com.uet.microservices.lib.model;
+
+import io.activej.serializer.annotations.Deserialize;
+import io.activej.serializer.annotations.Serialize;
+
+/* Load of a node at the time it answered a request */
+public class NodeLoad {
+    public @Serialize(order = 0) int   queueDepth;  // -> Tasks waiting for an executor thread
+    public @Serialize(order = 1) float utilization; // -> Busy threads / all threads
+
+    public NodeLoad(@Deserialize("queueDepth") int queueDepth, @Deserialize("utilization") float utilization) {
+        this.queueDepth  = queueDepth;
+        this.utilization = utilization;
+    }
+
+    @Override
+    public String toString() {
+        return "NodeLoad(" + queueDepth + ", " + utilization + ")";
+    }
+}
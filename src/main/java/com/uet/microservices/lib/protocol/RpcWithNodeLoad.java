@@ -0,0 +1,8 @@
+package com.uet.microservices.lib.protocol;
+
+import com.uet.microservices.lib.model.NodeLoad;
+
+/* Responses which piggyback the load of the answering node, read by SeedNodeManager for routing */
+public interface RpcWithNodeLoad {
+    NodeLoad getNodeLoad();
+}
@@ -10,7 +10,9 @@ import com.uet.microservices.lib.protocol.RpcNodeEvent;
 import com.uet.microservices.lib.protocol.RpcNodeInfo;
 import com.uet.microservices.utils.MyUtils;
 import io.activej.eventloop.Eventloop;
+import io.activej.net.PrimaryServer;
 import io.activej.promise.Promise;
+import io.activej.promise.SettablePromise;
 import io.activej.rpc.client.RpcClient;
 import io.activej.rpc.client.sender.strategy.RpcStrategies;
 import io.activej.rpc.server.RpcRequestHandler;
@@ -23,13 +25,16 @@ import java.net.InetSocketAddress;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public abstract class AbstractClusterService {
     private final String   serviceName;
     private final NodeType nodeType;
 
-    private final InetSocketAddress             rpcDscServerAddr;
-    private final InetSocketAddress             rpcMainServerAddr;
+    private       InetSocketAddress             rpcDscServerAddr;
+    private       InetSocketAddress             rpcMainServerAddr;
     private final Map<NodeType, List<Class<?>>> classTypes;
 
     protected final Eventloop         eventloop;
@@ -37,6 +42,12 @@ public abstract class AbstractClusterService {
     private final   InetSocketAddress dscAddr;
     private final   List<NodeType>    seedTypes;
     protected final SeedNodeManager   seedNodeManager;
+    protected       SeedNode          selfNode;
+
+    private   List<AbstractClusterService> shards;     // -> Copies of this service on every reactor, see ReactorGroup
+    protected int                          shardIndex; // -> Position of this copy in shards
+    private   RpcServer                    shardServer;
+    private   long                         lastShardId;
 
 
     protected AbstractClusterService(
@@ -59,6 +70,9 @@ public abstract class AbstractClusterService {
         this.seedTypes       = seedTypes;
         this.classTypes      = getConnectionClassTypes();
         this.seedNodeManager = new SeedNodeManager(eventloop, this.classTypes);
+        this.selfNode        = new SeedNode(serviceName, nodeType, new NodeAddr(rpcMainServerAddr));
+        this.shards          = List.of(this);
+        this.shardIndex      = 0;
     }
 
     private void startRpcDiscoveryServer() throws IOException {
@@ -66,24 +80,7 @@ public abstract class AbstractClusterService {
             req -> {
                 if (this.seedTypes.contains(req.nodeType)) {
                     var reqSN = new SeedNode(req.nodeName, req.nodeType, req.nodeAddr);
-
-                    return switch (req.status) {
-                        case UP -> {
-                            var isAdded = this.seedNodeManager.addNewNode(reqSN);
-                            if (isAdded) {
-                                logger.info(">> Added new node to seedNodes: {}", reqSN);
-                            }
-                            yield Promise.of(RpcBasicOperation.ACCEPT);
-                        }
-                        case DOWN -> {
-                            var isDeleted = this.seedNodeManager.removeNode(reqSN);
-                            if (isDeleted) {
-                                logger.info(">> Removed a node from seedNodes: {}", reqSN);
-                            }
-                            yield Promise.of(RpcBasicOperation.ACCEPT);
-                        }
-                        default -> Promise.of(RpcBasicOperation.ACCEPT);
-                    };
+                    onEveryShard(shard -> shard.applyNodeEvent(reqSN, req.status));
                 }
 
                 return Promise.of(RpcBasicOperation.ACCEPT);
@@ -98,11 +95,61 @@ public abstract class AbstractClusterService {
                  .listen();
     }
 
+    private void applyNodeEvent(SeedNode node, NodeStatus status) {
+        switch (status) {
+            case UP -> {
+                var isAdded = this.seedNodeManager.addNewNode(node);
+                if (isAdded) {
+                    logger.info(">> Added new node to seedNodes: {}", node);
+                }
+            }
+            case DOWN -> {
+                var isDeleted = this.seedNodeManager.removeNode(node);
+                if (isDeleted) {
+                    logger.info(">> Removed a node from seedNodes: {}", node);
+                }
+            }
+            default -> {}
+        }
+    }
+
     private void startRpcMainServer() throws IOException {
+        if (this.shards.size() > 1) {
+            startShardedRpcMainServer();
+            return;
+        }
+
+        var rpcServer = makeRpcMainServer();
+        if (rpcServer == null) return;
+
+        rpcServer.withListenAddress(rpcMainServerAddr).build().listen();
+        this.seedNodeManager.addNewNode(selfNode);
+        this.logger.info(">> == Start main RPC-SERVER at port {} ==", rpcMainServerAddr);
+    }
+
+    /* This reactor accepts connections, then each connection is served by one of the shards for its whole life */
+    private void startShardedRpcMainServer() throws IOException {
+        var workerServers = this.shards.stream()
+                                       .map(shard -> shard.shardServer)
+                                       .filter(Objects::nonNull)
+                                       .toList();
+        if (workerServers.isEmpty()) {
+            logger.info(">> No handlers for main RPC-SERVER");
+            return;
+        }
+
+        PrimaryServer.builder(eventloop, workerServers)
+                     .withListenAddress(rpcMainServerAddr)
+                     .build()
+                     .listen();
+        this.logger.info(">> == Start main RPC-SERVER at port {} with {} reactors ==", rpcMainServerAddr, workerServers.size());
+    }
+
+    private RpcServer.Builder makeRpcMainServer() {
         var handlers = makeRpcRequestHandlers();
         if (handlers.isEmpty()) {
             logger.info(">> No handlers for main RPC-SERVER");
-            return;
+            return null;
         }
 
         var targetClassTypes = this.classTypes.get(nodeType);
@@ -111,14 +158,69 @@ public abstract class AbstractClusterService {
         }
 
         var rpcServer = RpcServer.builder(eventloop)
-                                 .withMessageTypes(targetClassTypes)
-                                 .withListenAddress(rpcMainServerAddr);
+                                 .withMessageTypes(targetClassTypes);
         handlers.forEach(rpcServer::withHandler);
-        rpcServer.build().listen();
-        this.seedNodeManager.addNewNode(
-            new SeedNode(serviceName, nodeType, new NodeAddr(rpcMainServerAddr))
-        );
-        this.logger.info(">> == Start main RPC-SERVER at port {} ==", rpcMainServerAddr);
+        return rpcServer;
+    }
+
+    /* Called by ReactorGroup before the shard's reactor runs anything else: share the endpoint of the primary copy */
+    void joinShards(List<AbstractClusterService> shards, int shardIndex) {
+        var primary = shards.get(0);
+        this.rpcDscServerAddr  = primary.rpcDscServerAddr;
+        this.rpcMainServerAddr = primary.rpcMainServerAddr;
+        this.selfNode          = primary.selfNode;
+        this.shards            = shards;
+        this.shardIndex        = shardIndex;
+    }
+
+    /* Called by ReactorGroup from the shard's own reactor, the connections are handed over by the primary copy */
+    void startShard() throws IOException {
+        var rpcServer = makeRpcMainServer();
+        if (rpcServer != null) {
+            this.shardServer = rpcServer.build();
+            this.shardServer.listen();
+        }
+        this.seedNodeManager.addNewNode(selfNode);
+    }
+
+    /* Unique id in this node which also tells the shard owning it, see ownerShard */
+    protected long nextShardId() {
+        return ++lastShardId * this.shards.size() + this.shardIndex;
+    }
+
+    protected int ownerShard(long shardId) {
+        return (int) Math.floorMod(shardId, (long) this.shards.size());
+    }
+
+    /* Run an action on the reactor of another shard, the result comes back on this reactor */
+    @SuppressWarnings("unchecked")
+    protected <S extends AbstractClusterService, T> Promise<T> onShard(int index, Function<S, Promise<T>> action) {
+        var shard = (S) this.shards.get(index);
+        if (shard == this) return action.apply(shard);
+
+        var result = new SettablePromise<T>();
+        shard.eventloop.execute(() -> {
+            Promise<T> promise;
+            try {
+                promise = action.apply(shard);
+            } catch (RuntimeException e) {
+                promise = Promise.ofException(e);
+            }
+            promise.whenComplete((res, e) -> this.eventloop.execute(() -> {
+                if (e == null) result.set(res);
+                else result.setException(e);
+            }));
+        });
+        return result;
+    }
+
+    /* Run an action on every shard, each on its own reactor */
+    @SuppressWarnings("unchecked")
+    protected <S extends AbstractClusterService> void onEveryShard(Consumer<S> action) {
+        for (var shard : this.shards) {
+            if (shard == this) action.accept((S) shard);
+            else shard.eventloop.execute(() -> action.accept((S) shard));
+        }
     }
 
     private void registerToDiscoveryService() {
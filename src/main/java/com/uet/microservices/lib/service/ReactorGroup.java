@@ -0,0 +1,70 @@
+package com.uet.microservices.lib.service;
+
+import io.activej.eventloop.Eventloop;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * Run one copy (shard) of a service per Eventloop behind a single RPC endpoint, so a node can use
+ * every core for RPC decoding, promise bookkeeping and logging instead of a single thread.
+ * - The primary shard runs on the calling thread: it owns discovery and accepts main RPC connections
+ * - Each connection is handed to one shard, including the primary, and stays there
+ * - Every shard has its own handlers and SeedNodeManager, so no state is shared between reactors
+ * Number of reactors: -Dservice.reactors (default 1, i.e. the plain single eventloop mode)
+ */
+public class ReactorGroup {
+    private static final int REACTORS = Math.max(1, Integer.getInteger("service.reactors", 1));
+
+    public static int getReactors() {
+        return REACTORS;
+    }
+
+    /* Create the shards with given factory and run the primary eventloop on this thread */
+    public static void run(Function<Eventloop, ? extends AbstractClusterService> factory) throws IOException {
+        var primaryEL = Eventloop.create();
+        var primary   = factory.apply(primaryEL);
+        if (REACTORS == 1) {
+            primary.startService();
+            primaryEL.run();
+            return;
+        }
+
+        var shards = new ArrayList<AbstractClusterService>();
+        shards.add(primary);
+        for (int i = 1; i < REACTORS; i++) {
+            var eventloop = Eventloop.create();
+            eventloop.keepAlive(true); // -> Shard reactors only get work from other threads at the beginning
+
+            var thread = new Thread(eventloop, "reactor-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            shards.add(factory.apply(eventloop));
+        }
+
+        var group = List.copyOf(shards);
+        for (int i = 0; i < group.size(); i++) {
+            var shard = group.get(i);
+            shard.joinShards(group, i);
+            if (shard == primary) {
+                shard.startShard();
+            } else {
+                await(shard);
+            }
+        }
+
+        primary.startService();
+        primaryEL.run();
+    }
+
+    private static void await(AbstractClusterService shard) {
+        try {
+            shard.eventloop.submit(shard::startShard).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Cannot start shard on its reactor", e);
+        }
+    }
+}
@@ -2,24 +2,43 @@ package com.uet.microservices.lib.service;
 
 import com.uet.microservices.lib.model.NodeType;
 import com.uet.microservices.lib.model.SeedNode;
+import com.uet.microservices.lib.protocol.RpcWithNodeLoad;
+import com.uet.microservices.lib.service.routing.ConsistentHashRing;
+import com.uet.microservices.lib.service.routing.NodeLoadTracker;
+import com.uet.microservices.lib.service.routing.RoutingStrategies;
+import com.uet.microservices.lib.service.routing.RoutingStrategy;
 import io.activej.eventloop.Eventloop;
+import io.activej.promise.Promise;
 import io.activej.rpc.client.RpcClient;
 import io.activej.rpc.client.sender.strategy.RpcStrategies;
 
 import java.time.Duration;
 import java.util.*;
+import java.util.function.Predicate;
 
 public class SeedNodeManager {
-    private final Eventloop                     eventloop;
-    private final Set<SeedNode>                 seedNodes;
-    private final Map<NodeType, RpcClient>      senderGroup;
-    private final Map<NodeType, List<Class<?>>> classTypes;
+    private final Eventloop                         eventloop;
+    private final Set<SeedNode>                     seedNodes;
+    private final Map<SeedNode, RpcClient>          nodeSenders;
+    private final Map<NodeType, List<Class<?>>>     classTypes;
+    private final Map<NodeType, RoutingStrategy>    routings;
+    private final Map<NodeType, ConsistentHashRing> rings;
+    private final NodeLoadTracker                   loadTracker;
 
     public SeedNodeManager(Eventloop eventloop, Map<NodeType, List<Class<?>>> classTypes) {
         this.seedNodes   = new HashSet<>();
-        this.senderGroup = new HashMap<>();
+        this.nodeSenders = new HashMap<>();
         this.eventloop   = eventloop;
         this.classTypes  = classTypes;
+        this.routings    = new HashMap<>();
+        this.rings       = new HashMap<>();
+        this.loadTracker = new NodeLoadTracker();
+    }
+
+    /* Default routing of a nodeType is round-robin */
+    public SeedNodeManager withRouting(NodeType nodeType, RoutingStrategy routing) {
+        this.routings.put(nodeType, routing);
+        return this;
     }
 
     public boolean addNewNode(SeedNode node) {
@@ -29,7 +48,9 @@ public class SeedNodeManager {
         }
 
         var isAdded = this.seedNodes.add(node);
-        if (isAdded) updateSender(node.nodeType, targetClassTypes);
+        if (isAdded) {
+            addNodeSender(node, targetClassTypes);
+        }
 
         return isAdded;
     }
@@ -41,37 +62,116 @@ public class SeedNodeManager {
         }
 
         var isRemoved = this.seedNodes.removeIf(node -> node.equals(targetNode));
-        if (isRemoved) updateSender(targetNode.nodeType, targetClassTypes);
+        if (isRemoved) {
+            removeNodeSender(targetNode);
+        }
 
         return isRemoved;
     }
 
-    public RpcClient getSender(NodeType nodeType) {
-        return Optional.ofNullable(this.senderGroup.get(nodeType))
-                       .orElseThrow(() -> new RuntimeException("No available sender"));
-    }
-
-    private void updateSender(NodeType nodeType, List<Class<?>> classTypes) {
-        var seedNodeAddrs =
-            this.seedNodes.stream()
-                          .filter(sn -> sn.nodeType.equals(nodeType))
-                          .map(sn -> sn.nodeAddr.toSocketAddr())
-                          .map(RpcStrategies::server)
-                          .toList();
-
-        var strategy  = RpcStrategies.roundRobin(seedNodeAddrs);
-        var oldSender = Optional.ofNullable(senderGroup.get(nodeType));
-        if (oldSender.isPresent()) {
-            oldSender.get().changeStrategy(strategy, true);
-        } else {
-            var newSender =
-                RpcClient.builder(eventloop)
-                         .withMessageTypes(classTypes)
-                         .withStrategy(strategy)
-                         .withReconnectInterval(Duration.ofSeconds(10))
-                         .withForcedShutdown()
-                         .build();
-            newSender.start().map($ -> this.senderGroup.put(nodeType, newSender));
+    public int countNodes(NodeType nodeType) {
+        return (int) this.seedNodes.stream()
+                                   .filter(sn -> sn.nodeType.equals(nodeType))
+                                   .count();
+    }
+
+    /* Nodes of given type which already have a connected sender of their own */
+    public List<SeedNode> getNodes(NodeType nodeType) {
+        return this.seedNodes.stream()
+                             .filter(sn -> sn.nodeType.equals(nodeType))
+                             .filter(this.nodeSenders::containsKey)
+                             .toList();
+    }
+
+    public RpcClient getSender(SeedNode node) {
+        return Optional.ofNullable(this.nodeSenders.get(node))
+                       .orElseThrow(() -> new RuntimeException("No available sender for node: " + node));
+    }
+
+    public NodeLoadTracker getLoadTracker() {
+        return loadTracker;
+    }
+
+    public SeedNode route(NodeType nodeType) {
+        return route(nodeType, getNodes(nodeType));
+    }
+
+    public List<SeedNode> route(NodeType nodeType, int count) {
+        return route(nodeType, count, $ -> true);
+    }
+
+    /* Pick nodes for count requests which are sent together. Each pick counts as in-flight for next picks */
+    public List<SeedNode> route(NodeType nodeType, int count, Predicate<SeedNode> filter) {
+        var nodes = getNodes(nodeType).stream().filter(filter).toList();
+        var picks = new ArrayList<SeedNode>(count);
+        for (int i = 0; i < count; i++) {
+            var node = route(nodeType, nodes);
+            this.loadTracker.onStart(node.nodeAddr);
+            picks.add(node);
         }
+        picks.forEach(node -> this.loadTracker.onCancel(node.nodeAddr));
+        return picks;
+    }
+
+    /* Owner of a key among connected nodes of given type, it only changes for ~1/N of keys when a node joins or leaves */
+    public SeedNode routeByKey(NodeType nodeType, String key) {
+        return this.rings.computeIfAbsent(nodeType, $ -> new ConsistentHashRing())
+                         .select(getNodes(nodeType), key);
+    }
+
+    public <I, O> Promise<O> sendRequest(NodeType nodeType, I request) {
+        return sendRequest(route(nodeType), request);
+    }
+
+    /* Send to a node directly, tracking its in-flight requests and latency for routing */
+    public <I, O> Promise<O> sendRequest(SeedNode node, I request) {
+        var sender = getSender(node);
+        var start  = System.nanoTime();
+
+        this.loadTracker.onStart(node.nodeAddr);
+        return sender.<I, O>sendRequest(request)
+                     .whenComplete(() -> this.loadTracker.onComplete(node.nodeAddr, System.nanoTime() - start))
+                     .whenResult(res -> {
+                         if (res instanceof RpcWithNodeLoad withLoad) {
+                             this.loadTracker.onLoadReport(node.nodeAddr, withLoad.getNodeLoad());
+                         }
+                     });
+    }
+
+    /* Saturated nodes only get new requests when every node is saturated */
+    private SeedNode route(NodeType nodeType, List<SeedNode> nodes) {
+        if (nodes.isEmpty()) {
+            throw new RuntimeException("No available sender");
+        }
+
+        var available = nodes.stream()
+                             .filter(node -> !this.loadTracker.isSaturated(node.nodeAddr))
+                             .toList();
+        return getRouting(nodeType).select(available.isEmpty() ? nodes : available, loadTracker);
+    }
+
+    private RoutingStrategy getRouting(NodeType nodeType) {
+        return this.routings.computeIfAbsent(nodeType, $ -> RoutingStrategies.roundRobin());
+    }
+
+    private void addNodeSender(SeedNode node, List<Class<?>> classTypes) {
+        var newSender =
+            RpcClient.builder(eventloop)
+                     .withMessageTypes(classTypes)
+                     .withStrategy(RpcStrategies.server(node.nodeAddr.toSocketAddr()))
+                     .withReconnectInterval(Duration.ofSeconds(10))
+                     .withForcedShutdown()
+                     .build();
+        newSender.start().whenResult(() -> {
+            // -> Node may be removed while we were connecting
+            if (this.seedNodes.contains(node)) this.nodeSenders.put(node, newSender);
+            else newSender.stop();
+        });
+    }
+
+    private void removeNodeSender(SeedNode node) {
+        Optional.ofNullable(this.nodeSenders.remove(node))
+                .ifPresent(RpcClient::stop);
+        this.loadTracker.onRemove(node.nodeAddr);
     }
 }
@@ -0,0 +1,92 @@
+package com.uet.microservices.lib.service.admission;
+
+/**
+ * Adaptive concurrency limit, two modes:
+ * - VEGAS: the limit grows while latency stays close to the best latency seen (no queueing), and shrinks when
+ *   latency shows a queue building up or requests fail. Only fits requests which cost about the same
+ * - AIMD: latency is ignored, the limit grows on success and shrinks on errors and timeouts. For requests whose
+ *   cost varies a lot, e.g. a cache hit next to a calculation of millions of elements
+ * Only touched from the eventloop thread.
+ */
+public class AdaptiveLimiter {
+    public enum Mode {VEGAS, AIMD}
+
+    private static final double ALPHA         = 3;    // -> Grow while estimated queue is smaller than this
+    private static final double BETA          = 6;    // -> Shrink when estimated queue is bigger than this
+    private static final double BACKOFF       = 0.9;
+    private static final int    MIN_RTT_PROBE = 1000; // -> Forget best latency every N samples so it can follow the load
+
+    private final Mode mode;
+    private final int  minLimit;
+    private final int  maxLimit;
+
+    private double limit;
+    private int    inFlight;
+    private long   minRttNanos = Long.MAX_VALUE;
+    private int    samples;
+    private long   lastDecreaseNanos;
+
+    public AdaptiveLimiter(Mode mode, int initialLimit, int minLimit, int maxLimit) {
+        this.mode     = mode;
+        this.limit    = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    public boolean tryAcquire() {
+        if (inFlight >= (int) limit) return false;
+        inFlight++;
+        return true;
+    }
+
+    public void onSuccess(long rttNanos) {
+        inFlight--;
+        if (mode == Mode.AIMD) {
+            grow();
+            return;
+        }
+
+        if (++samples % MIN_RTT_PROBE == 0) minRttNanos = Long.MAX_VALUE;
+        minRttNanos = Math.min(minRttNanos, Math.max(1, rttNanos));
+
+        var queue = limit * (1 - (double) minRttNanos / Math.max(1, rttNanos));
+        if (queue < ALPHA) {
+            grow();
+        } else if (queue > BETA) {
+            decrease(rttNanos);
+        }
+    }
+
+    /* Errors and timeouts count as overload */
+    public void onFailure(long rttNanos) {
+        inFlight--;
+        decrease(rttNanos);
+    }
+
+    /* Release the slot without a latency sample, e.g. the client is gone */
+    public void onIgnore() {
+        inFlight--;
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /* About +1 per limit requests */
+    private void grow() {
+        limit = Math.min(maxLimit, limit + 1 / limit);
+    }
+
+    /* At most one decrease per round trip, otherwise one slow burst would collapse the limit */
+    private void decrease(long rttNanos) {
+        var now = System.nanoTime();
+        if (now - lastDecreaseNanos < rttNanos) return;
+
+        lastDecreaseNanos = now;
+        limit             = Math.max(minLimit, limit * BACKOFF);
+    }
+}
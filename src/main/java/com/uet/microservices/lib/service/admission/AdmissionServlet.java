@@ -0,0 +1,91 @@
+package com.uet.microservices.lib.service.admission;
+
+import io.activej.http.AsyncServlet;
+import io.activej.http.HttpHeaders;
+import io.activej.http.HttpRequest;
+import io.activej.http.HttpResponse;
+import io.activej.promise.Promise;
+import io.activej.promise.SettablePromise;
+
+/**
+ * Reject requests over the limiter's concurrency limit with a fast 503 instead of queueing them.
+ * Client mistakes never count against the limit: bad parameters are answered with 400 before admission,
+ * and other 4xx responses only release their slot.
+ */
+public final class AdmissionServlet {
+    private AdmissionServlet() {}
+
+    /* Checks parameters of a request, throws IllegalArgumentException (e.g. NumberFormatException) for a bad one */
+    @FunctionalInterface
+    public interface Validator {
+        void validate(HttpRequest req);
+    }
+
+    /* A servlet which keeps working after its response headers are sent, e.g. for a streamed body */
+    @FunctionalInterface
+    public interface StreamingServlet {
+        /* done is completed when the work of the request ends, with an exception if the client is gone */
+        Promise<HttpResponse> serve(HttpRequest req, SettablePromise<Void> done) throws Exception;
+    }
+
+    public static AsyncServlet wrap(AdaptiveLimiter limiter, int retryAfterSeconds, Validator validator, AsyncServlet servlet) {
+        return wrapStreaming(
+            limiter,
+            retryAfterSeconds,
+            validator,
+            (req, done) -> servlet.serve(req).whenComplete(() -> done.trySet(null))
+        );
+    }
+
+    /* The slot is held and the latency measured until done, not until the response headers */
+    public static AsyncServlet wrapStreaming(
+        AdaptiveLimiter limiter,
+        int retryAfterSeconds,
+        Validator validator,
+        StreamingServlet servlet
+    ) {
+        return req -> {
+            try {
+                validator.validate(req);
+            } catch (IllegalArgumentException e) {
+                return Promise.of(HttpResponse.ofCode(400).withPlainText("Bad request: " + e.getMessage()).build());
+            }
+
+            if (!limiter.tryAcquire()) {
+                return Promise.of(
+                    HttpResponse.ofCode(503)
+                                .withHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                                .withPlainText("Server is overloaded, retry later")
+                                .build()
+                );
+            }
+
+            var start = System.nanoTime();
+            var done  = new SettablePromise<Void>();
+            Promise<HttpResponse> promise;
+            try {
+                promise = servlet.serve(req, done);
+            } catch (Exception e) {
+                limiter.onFailure(System.nanoTime() - start);
+                throw e;
+            }
+
+            return promise.whenComplete((res, e) -> {
+                if (e != null || res.getCode() >= 500) {
+                    limiter.onFailure(System.nanoTime() - start);
+                    return;
+                }
+                if (res.getCode() >= 400) {
+                    limiter.onIgnore();
+                    return;
+                }
+
+                // -> A client which leaves early says nothing about our latency, its slot is only released
+                done.whenComplete(($, ex) -> {
+                    if (ex == null) limiter.onSuccess(System.nanoTime() - start);
+                    else limiter.onIgnore();
+                });
+            });
+        };
+    }
+}
@@ -0,0 +1,140 @@
+package com.uet.microservices.lib.service.execution;
+
+import io.activej.common.function.SupplierEx;
+import io.activej.promise.Promise;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor for Promise.ofBlocking work with a bounded concurrency, a bounded queue and metrics.
+ * Two modes:
+ * - BOUNDED: fixed platform threads, for CPU bound work
+ * - VIRTUAL: one virtual thread per task (JDK 21+, cached platform threads on older JDKs), for blocking IO
+ * In both modes tasks over (concurrency + queueCapacity) are rejected instead of queued.
+ */
+public class ExecutionPool implements Executor {
+    public enum Mode {BOUNDED, VIRTUAL}
+
+    private final String          name;
+    private final Mode            mode;
+    private final ExecutorService delegate;
+    private final int             concurrency;
+    private final int             queueCapacity;
+    private final Semaphore       permits;
+
+    private final AtomicInteger queued    = new AtomicInteger();
+    private final AtomicInteger active    = new AtomicInteger();
+    private final AtomicLong    completed = new AtomicLong();
+    private final AtomicLong    rejected  = new AtomicLong();
+
+    private ExecutionPool(String name, Mode mode, ExecutorService delegate, int concurrency, int queueCapacity) {
+        this.name          = name;
+        this.mode          = mode;
+        this.delegate      = delegate;
+        this.concurrency   = concurrency;
+        this.queueCapacity = queueCapacity;
+        this.permits       = new Semaphore(concurrency);
+    }
+
+    public static ExecutionPool bounded(String name, int threads, int queueCapacity) {
+        var counter  = new AtomicInteger();
+        var executor = Executors.newFixedThreadPool(threads, runnable -> {
+            var thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        return new ExecutionPool(name, Mode.BOUNDED, executor, threads, queueCapacity);
+    }
+
+    /* concurrency is the number of tasks running at the same time, others wait in queue */
+    public static ExecutionPool virtual(String name, int concurrency, int queueCapacity) {
+        return new ExecutionPool(name, Mode.VIRTUAL, newVirtualThreadPerTaskExecutor(), concurrency, queueCapacity);
+    }
+
+    /**
+     * Configure from system properties:
+     * - {prefix}.mode: bounded (default) or virtual
+     * - {prefix}.threads: concurrency of the pool
+     * - {prefix}.queue-capacity: waiting tasks before rejection
+     */
+    public static ExecutionPool fromConfig(String prefix, int defaultThreads, int defaultQueueCapacity) {
+        var mode          = Mode.valueOf(System.getProperty(prefix + ".mode", "bounded").toUpperCase());
+        var threads       = Integer.getInteger(prefix + ".threads", defaultThreads);
+        var queueCapacity = Integer.getInteger(prefix + ".queue-capacity", defaultQueueCapacity);
+
+        return switch (mode) {
+            case BOUNDED -> bounded(prefix, threads, queueCapacity);
+            case VIRTUAL -> virtual(prefix, threads, queueCapacity);
+        };
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (queued.incrementAndGet() > queueCapacity + Math.max(0, concurrency - active.get())) {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException(name + " is full: " + this);
+        }
+
+        delegate.execute(() -> {
+            // -> Virtual threads are unlimited, so concurrency is limited here for both modes
+            permits.acquireUninterruptibly();
+            queued.decrementAndGet();
+            active.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                active.decrementAndGet();
+                completed.incrementAndGet();
+                permits.release();
+            }
+        });
+    }
+
+    public <T> Promise<T> submit(SupplierEx<T> supplier) {
+        try {
+            return Promise.ofBlocking(this, supplier);
+        } catch (RejectedExecutionException e) {
+            return Promise.ofException(e);
+        }
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutionPool(" + name + ", " + mode + ", active=" + active.get() + "/" + concurrency +
+               ", queued=" + queued.get() + "/" + queueCapacity +
+               ", completed=" + completed.get() + ", rejected=" + rejected.get() + ")";
+    }
+
+    /* Project targets JDK 17, so virtual threads are looked up at runtime */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            var factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.uet.microservices.lib.service.routing;
+
+import com.uet.microservices.lib.model.SeedNode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Consistent hashing of keys over nodes, with VIRTUAL_NODES points per node on the ring.
+ * When a node joins or leaves, only the keys of its own arcs move, about 1/N of all keys.
+ * The ring is rebuilt only when the set of nodes changes. Only touched from the eventloop thread.
+ */
+public class ConsistentHashRing {
+    private static final int VIRTUAL_NODES = 128;
+
+    private Set<SeedNode>           members = Set.of();
+    private TreeMap<Long, SeedNode> ring    = new TreeMap<>();
+
+    /* Owner of the key among nodes, every node with the same view of nodes picks the same owner */
+    public SeedNode select(List<SeedNode> nodes, String key) {
+        if (nodes.isEmpty()) {
+            throw new RuntimeException("No available sender");
+        }
+
+        var current = Set.copyOf(nodes);
+        if (!current.equals(members)) rebuild(current);
+
+        var entry = ring.ceilingEntry(hash(key));
+        return (entry != null ? entry : ring.firstEntry()).getValue();
+    }
+
+    private void rebuild(Set<SeedNode> nodes) {
+        var newRing = new TreeMap<Long, SeedNode>();
+        for (var node : nodes) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                newRing.put(hash(node.nodeAddr.host + ":" + node.nodeAddr.port + "#" + i), node);
+            }
+        }
+        this.members = nodes;
+        this.ring    = newRing;
+    }
+
+    /* FNV-1a over UTF-8, then a 64-bit finalizer so close keys land far apart on the ring */
+    private static long hash(String value) {
+        var h = 0xcbf29ce484222325L;
+        for (var b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
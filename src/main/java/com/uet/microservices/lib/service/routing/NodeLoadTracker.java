@@ -0,0 +1,97 @@
+package com.uet.microservices.lib.service.routing;
+
+import com.uet.microservices.lib.model.NodeAddr;
+import com.uet.microservices.lib.model.NodeLoad;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-flight requests, recent latency and last reported load per node.
+ * Only touched from the eventloop thread.
+ */
+public class NodeLoadTracker {
+    private static final double EWMA_ALPHA      = 0.3;
+    private static final long   REPORT_TTL_MS   = 5_000; // -> Older load reports are ignored, so a saturated node is tried again
+    private static final int    SATURATED_QUEUE = Integer.getInteger("routing.saturated-queue-depth", 4);
+
+    private final Map<NodeAddr, LoadStats> loads = new HashMap<>();
+
+    public void onStart(NodeAddr addr) {
+        get(addr).inFlight++;
+    }
+
+    public void onComplete(NodeAddr addr, long durationNanos) {
+        var load = get(addr);
+        var ms   = durationNanos / 1_000_000.0;
+
+        load.inFlight  = Math.max(0, load.inFlight - 1);
+        load.latencyMs = load.latencyMs == 0 ? ms : EWMA_ALPHA * ms + (1 - EWMA_ALPHA) * load.latencyMs;
+    }
+
+    /* Undo onStart of a request which was not sent */
+    public void onCancel(NodeAddr addr) {
+        var load = get(addr);
+        load.inFlight = Math.max(0, load.inFlight - 1);
+    }
+
+    public void onLoadReport(NodeAddr addr, NodeLoad report) {
+        var load = get(addr);
+        load.report   = report;
+        load.reportAt = System.currentTimeMillis();
+    }
+
+    public void onRemove(NodeAddr addr) {
+        loads.remove(addr);
+    }
+
+    public int getInFlight(NodeAddr addr) {
+        return get(addr).inFlight;
+    }
+
+    public double getLatencyMs(NodeAddr addr) {
+        return get(addr).latencyMs;
+    }
+
+    /* Queue depth from the last fresh load report of the node, 0 if unknown */
+    public int getQueueDepth(NodeAddr addr) {
+        var report = getFreshReport(addr);
+        return report == null ? 0 : report.queueDepth;
+    }
+
+    /* Busy threads / all threads from the last fresh load report of the node, 0 if unknown */
+    public float getUtilization(NodeAddr addr) {
+        var report = getFreshReport(addr);
+        return report == null ? 0 : report.utilization;
+    }
+
+    public boolean isSaturated(NodeAddr addr) {
+        return getQueueDepth(addr) >= SATURATED_QUEUE;
+    }
+
+    /**
+     * Expected wait of a new request on this node. Unknown latency counts as 1ms so new nodes get tried.
+     * Busy threads add up to one request, so of two nodes with empty queues the one with free threads wins
+     */
+    public double getCost(NodeAddr addr) {
+        var load = get(addr);
+        return (load.inFlight + getQueueDepth(addr) + getUtilization(addr) + 1) * Math.max(1, load.latencyMs);
+    }
+
+    private NodeLoad getFreshReport(NodeAddr addr) {
+        var load = get(addr);
+        if (load.report == null || System.currentTimeMillis() - load.reportAt > REPORT_TTL_MS) return null;
+        return load.report;
+    }
+
+    private LoadStats get(NodeAddr addr) {
+        return loads.computeIfAbsent(addr, $ -> new LoadStats());
+    }
+
+    private static class LoadStats {
+        int      inFlight;
+        double   latencyMs;
+        NodeLoad report;
+        long     reportAt;
+    }
+}
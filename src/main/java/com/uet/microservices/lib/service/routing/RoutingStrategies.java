@@ -0,0 +1,40 @@
+package com.uet.microservices.lib.service.routing;
+
+import com.uet.microservices.lib.model.SeedNode;
+
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+
+public final class RoutingStrategies {
+    private RoutingStrategies() {}
+
+    public static RoutingStrategy roundRobin() {
+        var counter = new int[]{0};
+        return (nodes, tracker) -> nodes.get(Math.floorMod(counter[0]++, nodes.size()));
+    }
+
+    /* Node with fewest outstanding requests (ours in-flight + its reported queue), ties are broken by recent latency */
+    public static RoutingStrategy leastOutstanding() {
+        return (nodes, tracker) ->
+            nodes.stream()
+                 .min(Comparator.<SeedNode>comparingInt(sn -> tracker.getInFlight(sn.nodeAddr) + tracker.getQueueDepth(sn.nodeAddr))
+                                .thenComparingDouble(sn -> tracker.getLatencyMs(sn.nodeAddr)))
+                 .orElseThrow();
+    }
+
+    /* Sample two random nodes and take the one with lower expected wait */
+    public static RoutingStrategy powerOfTwoChoices() {
+        return (nodes, tracker) -> {
+            if (nodes.size() == 1) return nodes.get(0);
+
+            var random = ThreadLocalRandom.current();
+            var first  = random.nextInt(nodes.size());
+            var second = random.nextInt(nodes.size() - 1);
+            if (second >= first) second++;
+
+            var a = nodes.get(first);
+            var b = nodes.get(second);
+            return tracker.getCost(a.nodeAddr) <= tracker.getCost(b.nodeAddr) ? a : b;
+        };
+    }
+}
@@ -0,0 +1,11 @@
+package com.uet.microservices.lib.service.routing;
+
+import com.uet.microservices.lib.model.SeedNode;
+
+import java.util.List;
+
+@FunctionalInterface
+public interface RoutingStrategy {
+    /* Pick one of nodes (never empty) for the next request */
+    SeedNode select(List<SeedNode> nodes, NodeLoadTracker tracker);
+}
@@ -0,0 +1,22 @@
+package com.uet.microservices.services.log;
+
+import io.activej.serializer.annotations.Deserialize;
+import io.activej.serializer.annotations.Serialize;
+
+import java.util.List;
+
+/* Many LogMessages in one RPC frame, accepted as a whole. A forwarded batch is stored by its receiver, never forwarded again */
+public class LogBatch {
+    public final @Serialize(order = 0) List<LogMessage> messages;
+    public final @Serialize(order = 1) boolean          forwarded;
+
+    public LogBatch(@Deserialize("messages") List<LogMessage> messages, @Deserialize("forwarded") boolean forwarded) {
+        this.messages  = messages;
+        this.forwarded = forwarded;
+    }
+
+    @Override
+    public String toString() {
+        return "LogBatch(" + messages.size() + " messages" + (forwarded ? ", forwarded)" : ")");
+    }
+}
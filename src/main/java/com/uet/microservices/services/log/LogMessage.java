@@ -0,0 +1,20 @@
+package com.uet.microservices.services.log;
+
+import io.activej.serializer.annotations.Deserialize;
+import io.activej.serializer.annotations.Serialize;
+
+/* A message with the key which decides its owning LOG node, e.g. its source */
+public class LogMessage {
+    public final @Serialize(order = 0) String key;
+    public final @Serialize(order = 1) String message;
+
+    public LogMessage(@Deserialize("key") String key, @Deserialize("message") String message) {
+        this.key     = key;
+        this.message = message;
+    }
+
+    @Override
+    public String toString() {
+        return "LogMessage(" + key + ", " + message + ")";
+    }
+}
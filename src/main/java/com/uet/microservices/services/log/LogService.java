@@ -1,28 +1,70 @@
 package com.uet.microservices.services.log;
 
 import com.uet.microservices.lib.model.NodeType;
+import com.uet.microservices.lib.model.SeedNode;
 import com.uet.microservices.lib.protocol.RpcBasicOperation;
 import com.uet.microservices.lib.service.AbstractClusterService;
+import com.uet.microservices.lib.service.execution.ExecutionPool;
 import com.uet.microservices.services.ServiceType;
+import com.uet.microservices.services.log.limit.LogLimiter;
+import com.uet.microservices.services.log.limit.LogRollup;
+import com.uet.microservices.services.log.store.LogQuery;
+import com.uet.microservices.services.log.store.SegmentIndex;
+import com.uet.microservices.services.log.store.SegmentedLogStore;
 import io.activej.eventloop.Eventloop;
+import io.activej.http.AsyncServlet;
+import io.activej.http.HttpHeaders;
+import io.activej.http.HttpRequest;
+import io.activej.http.HttpResponse;
+import io.activej.http.HttpServer;
+import io.activej.http.RoutingServlet;
 import io.activej.promise.Promise;
+import io.activej.promise.Promises;
 import io.activej.reactor.schedule.ScheduledRunnable;
 import io.activej.rpc.server.RpcRequestHandler;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+
+import static io.activej.bytebuf.ByteBufStrings.wrapUtf8;
+import static io.activej.http.HttpMethod.GET;
 
 public class LogService extends AbstractClusterService {
+    /* Notice: Every client of LOG nodes must use this list, only append new types at the end */
+    public static final List<Class<?>> MESSAGE_TYPES = List.of(
+        String.class,
+        RpcBasicOperation.class,
+        LogTask.class,
+        LogMessage.class,
+        LogBatch.class
+    );
+
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE     = 1000;
+    private static final int DEFAULT_ROLLUP    = 60;
+
+    private final int               webPort;
+    private final SegmentedLogStore store;
+    private final ExecutionPool     queryPool; // -> Searches read segment files, never on the eventloop
+    private final LogLimiter        limiter;
+    private final LogRollup         rollup;
+
     protected LogService(
         Eventloop eventloop,
         InetSocketAddress discoveryAddr,
         String serviceName,
         NodeType nodeType,
-        List<NodeType> seedTypes
+        List<NodeType> seedTypes,
+        int webPort
     ) {
         super(eventloop, discoveryAddr, serviceName, nodeType, seedTypes);
+        this.webPort   = webPort;
+        // -> Web port is unique per LOG node on a host and stable across restarts, so it names the data directory
+        this.store     = new SegmentedLogStore(eventloop, SegmentedLogStore.Config.fromSystemProperties(serviceName + "-" + webPort));
+        this.queryPool = ExecutionPool.fromConfig("log.query-executor", 2, 100);
+        this.limiter   = new LogLimiter(LogLimiter.Config.fromSystemProperties(), eventloop.currentTimeMillis());
+        this.rollup    = new LogRollup(Integer.getInteger("log.rollup.seconds", 3600));
     }
 
     public static LogService create(Eventloop eventloop, InetSocketAddress discoveryAddr) {
@@ -31,42 +73,161 @@ public class LogService extends AbstractClusterService {
             discoveryAddr,
             "log-service",
             ServiceType.LOG,
-            List.of()
+            List.of(ServiceType.LOG),
+            Integer.getInteger("log.web-port", 9090)
         );
     }
 
     @Override
     protected Map<Class, RpcRequestHandler> makeRpcRequestHandlers() {
-        RpcRequestHandler<String, RpcBasicOperation> messageHandler =
-            msg -> {
-                logger.info(">> Received message: {}", msg);
-                var task   = LogTask.create(msg);
-                var sender = this.seedNodeManager.getSender(ServiceType.LOG);
-                return sender.sendRequest(task)
-                             .map($ -> RpcBasicOperation.ACCEPT);
-            };
+        // -> A plain message has no source: it is spread over LOG nodes by its text and only limited by level
+        RpcRequestHandler<String, RpcBasicOperation> messageHandler = msg -> ingest(msg, null, msg);
 
+        RpcRequestHandler<LogMessage, RpcBasicOperation> keyedMessageHandler = msg -> ingest(msg.key, msg.key, msg.message);
+
+        // -> Accepted once the task is on disk, the store writes many tasks per flush
         RpcRequestHandler<LogTask, RpcBasicOperation> taskHandler =
-            task -> {
-                switch (task.taskType) {
-                    case INFO -> logger.info(">> Received a task: {}", task.message);
-                    case WARN -> logger.warn(">> Received a task: {}", task.message);
-                    case ERROR -> logger.error(">> Received a task: {}", task.message);
-                }
+            task -> storeLocal(null, task)
+                        .map($ -> RpcBasicOperation.ACCEPT);
 
-                return Promise.of(RpcBasicOperation.ACCEPT);
-            };
+        RpcRequestHandler<LogBatch, RpcBasicOperation> batchHandler = this::ingest;
 
         return Map.of(
             String.class, messageHandler,
-            LogTask.class, taskHandler
+            LogMessage.class, keyedMessageHandler,
+            LogTask.class, taskHandler,
+            LogBatch.class, batchHandler
+        );
+    }
+
+    /* Store on the owner of the key: here, or one forward hop. A forwarded LogTask or batch is never forwarded again */
+    private Promise<RpcBasicOperation> ingest(String key, String source, String message) {
+        var task  = LogTask.create(message);
+        var owner = this.seedNodeManager.routeByKey(ServiceType.LOG, key);
+        Promise<?> done;
+        if (owner.equals(selfNode)) {
+            done = storeLocal(source, task);
+        } else if (source == null) {
+            done = this.seedNodeManager.sendRequest(owner, task);
+        } else {
+            done = this.seedNodeManager.sendRequest(owner, new LogBatch(List.of(new LogMessage(key, message)), true));
+        }
+        return done.map($ -> RpcBasicOperation.ACCEPT);
+    }
+
+    /* Split the batch by owner: own messages are stored here, others go in one forwarded batch per owner */
+    private Promise<RpcBasicOperation> ingest(LogBatch batch) {
+        if (batch.forwarded) {
+            return storeAll(batch.messages).map($ -> RpcBasicOperation.ACCEPT);
+        }
+
+        var byOwner = new HashMap<SeedNode, List<LogMessage>>();
+        for (var msg : batch.messages) {
+            var owner = this.seedNodeManager.routeByKey(ServiceType.LOG, msg.key);
+            byOwner.computeIfAbsent(owner, $ -> new ArrayList<>()).add(msg);
+        }
+
+        var done = new ArrayList<Promise<?>>();
+        byOwner.forEach((owner, messages) -> done.add(
+            owner.equals(selfNode)
+                ? storeAll(messages)
+                : this.seedNodeManager.sendRequest(owner, new LogBatch(messages, true))
+        ));
+        return Promises.all(done).map($ -> RpcBasicOperation.ACCEPT);
+    }
+
+    private Promise<Void> storeAll(List<LogMessage> messages) {
+        return Promises.all(messages.stream().map(msg -> storeLocal(msg.key, LogTask.create(msg.message))).toList());
+    }
+
+    /* Every stored message passes the limiter here. A dropped message is still accepted, so senders do not retry it */
+    private Promise<Void> storeLocal(String source, LogTask task) {
+        var now      = eventloop.currentTimeMillis();
+        var decision = limiter.decide(source, task.taskType, task.message, now);
+        rollup.record(now, task.taskType, decision.isStored());
+        return decision.isStored() ? store.append(task) : Promise.complete();
+    }
+
+    @Override
+    public void startService() throws IOException {
+        store.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(store::close));
+        super.startService();
+        startWebServer();
+    }
+
+    private void startWebServer() throws IOException {
+        // -> GET /logs?level=WARN&from=<epoch ms>&to=<epoch ms>&q=<tokens>&limit=100&cursor=<next of previous page>
+        AsyncServlet queryHandler = req -> {
+            LogQuery query;
+            try {
+                query = parseQuery(req);
+            } catch (IllegalArgumentException e) {
+                return Promise.of(HttpResponse.ofCode(400).withPlainText("Bad query: " + e.getMessage()).build());
+            }
+
+            // -> A page is at most MAX_PAGE_SIZE records, it is rendered on the query thread and sent as one body
+            return queryPool.submit(() -> render(store.query(query)))
+                            .map(body -> HttpResponse.ok200()
+                                                     .withHeader(HttpHeaders.CONTENT_TYPE, "text/plain; charset=utf-8")
+                                                     .withBody(wrapUtf8(body))
+                                                     .build());
+        };
+
+        // -> GET /logs/rollup?seconds=60, CSV of stored and dropped messages per level and second
+        AsyncServlet rollupHandler = req -> {
+            var seconds = Optional.ofNullable(req.getQueryParameter("seconds")).map(Integer::parseInt).orElse(DEFAULT_ROLLUP);
+            return Promise.of(
+                HttpResponse.ok200()
+                            .withHeader(HttpHeaders.CONTENT_TYPE, "text/csv; charset=utf-8")
+                            .withBody(wrapUtf8(rollup.toCsv(eventloop.currentTimeMillis(), seconds)))
+                            .build()
+            );
+        };
+
+        var servlet = RoutingServlet.builder(eventloop)
+                                    .with(GET, "/logs", queryHandler)
+                                    .with(GET, "/logs/rollup", rollupHandler)
+                                    .build();
+        HttpServer.builder(eventloop, servlet)
+                  .withListenPort(webPort)
+                  .build()
+                  .listen();
+        logger.info(">> Web-server stated at port: {}", webPort);
+    }
+
+    /* One line per record, the last line is the cursor of the next page */
+    private static String render(LogQuery.Page page) {
+        var sb = new StringBuilder();
+        page.records().forEach(record -> sb.append(record).append('\n'));
+        var next = page.nextCursor() == LogQuery.Page.NO_MORE ? "none" : String.valueOf(page.nextCursor());
+        return sb.append("next=").append(next).append('\n').toString();
+    }
+
+    private static LogQuery parseQuery(HttpRequest req) {
+        var level  = Optional.ofNullable(req.getQueryParameter("level"))
+                             .map(value -> TaskType.valueOf(value.toUpperCase(Locale.ROOT)))
+                             .orElse(null);
+        var from   = Optional.ofNullable(req.getQueryParameter("from")).map(Long::parseLong).orElse(0L);
+        var to     = Optional.ofNullable(req.getQueryParameter("to")).map(Long::parseLong).orElse(Long.MAX_VALUE);
+        var q      = Optional.ofNullable(req.getQueryParameter("q")).orElse("");
+        var limit  = Optional.ofNullable(req.getQueryParameter("limit")).map(Integer::parseInt).orElse(DEFAULT_PAGE_SIZE);
+        var cursor = Optional.ofNullable(req.getQueryParameter("cursor")).map(Long::parseLong).orElse(0L);
+
+        return new LogQuery(
+            level,
+            from,
+            to,
+            List.copyOf(SegmentIndex.tokenize(q)),
+            Math.max(0, cursor),
+            Math.max(1, Math.min(MAX_PAGE_SIZE, limit))
         );
     }
 
     @Override
     protected Map<NodeType, List<Class<?>>> getConnectionClassTypes() {
         return Map.of(
-            ServiceType.LOG, List.of(String.class, RpcBasicOperation.class, LogTask.class)
+            ServiceType.LOG, MESSAGE_TYPES
         );
     }
 
@@ -0,0 +1,103 @@
+package com.uet.microservices.services.log.limit;
+
+import com.uet.microservices.services.log.TaskType;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decide whether a message is stored, so a log flood cannot slow down the node.
+ * - Every source (the message key) has a token bucket, and so has every level. The source bucket is asked first,
+ *   so a noisy source is stopped by its own budget before it can use up the shared level budget
+ * - An INFO message over budget is still stored when it is sampled: a stable hash of its text and the current
+ *   second picks 1 of infoSampleEvery, so every node makes the same decision, and a repeated line is kept in some
+ *   seconds instead of always or never. Samples have their own small bucket, so a flood cannot pass through them
+ * - WARN and ERROR messages over budget are dropped, ERROR is not limited by level by default
+ * A rate of 0 means no limit. Only touched from the eventloop thread.
+ */
+public class LogLimiter {
+    public enum Decision {
+        STORE, SAMPLE, DROP;
+
+        public boolean isStored() {
+            return this != DROP;
+        }
+    }
+
+    public record Config(
+        Map<TaskType, Integer> levelRates,
+        int sourceRate,
+        int maxSources,
+        int infoSampleEvery,
+        int infoSampleRate
+    ) {
+        /**
+         * -Dlog.limit.<info|warn|error>-per-sec, -Dlog.limit.source-per-sec, -Dlog.limit.max-sources,
+         * -Dlog.limit.info-sample-every, -Dlog.limit.info-sample-per-sec
+         */
+        public static Config fromSystemProperties() {
+            var levelRates = new EnumMap<TaskType, Integer>(TaskType.class);
+            levelRates.put(TaskType.INFO, Integer.getInteger("log.limit.info-per-sec", 5000));
+            levelRates.put(TaskType.WARN, Integer.getInteger("log.limit.warn-per-sec", 2000));
+            levelRates.put(TaskType.ERROR, Integer.getInteger("log.limit.error-per-sec", 0));
+            return new Config(
+                levelRates,
+                Integer.getInteger("log.limit.source-per-sec", 1000),
+                Integer.getInteger("log.limit.max-sources", 10_000),
+                Math.max(1, Integer.getInteger("log.limit.info-sample-every", 100)),
+                Integer.getInteger("log.limit.info-sample-per-sec", 50)
+            );
+        }
+    }
+
+    private final Config                         config;
+    private final EnumMap<TaskType, TokenBucket> levelBuckets;
+    private final Map<String, TokenBucket>       sourceBuckets; // -> LRU, a forgotten source starts with a full bucket
+    private final TokenBucket                    sampleBucket;  // -> null when samples are not limited
+
+    public LogLimiter(Config config, long now) {
+        this.config       = config;
+        this.levelBuckets = new EnumMap<>(TaskType.class);
+        config.levelRates().forEach((level, rate) -> {
+            if (rate > 0) levelBuckets.put(level, new TokenBucket(rate, rate, now));
+        });
+        this.sourceBuckets = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TokenBucket> eldest) {
+                return size() > config.maxSources();
+            }
+        };
+        this.sampleBucket = config.infoSampleRate() > 0
+            ? new TokenBucket(config.infoSampleRate(), config.infoSampleRate(), now)
+            : null;
+    }
+
+    /* source may be null when the sender did not tell it, then only the level budget applies */
+    public Decision decide(String source, TaskType level, String message, long now) {
+        var inBudget = true;
+        if (source != null && config.sourceRate() > 0) {
+            var sourceBucket = sourceBuckets.computeIfAbsent(
+                source,
+                $ -> new TokenBucket(config.sourceRate(), config.sourceRate(), now)
+            );
+            inBudget = sourceBucket.tryTake(now);
+        }
+
+        // -> A message rejected by its source takes no level token
+        var levelBucket = levelBuckets.get(level);
+        if (inBudget && levelBucket != null) inBudget = levelBucket.tryTake(now);
+
+        if (inBudget) return Decision.STORE;
+        if (level == TaskType.INFO && isSampled(message, now) && (sampleBucket == null || sampleBucket.tryTake(now))) {
+            return Decision.SAMPLE;
+        }
+        return Decision.DROP;
+    }
+
+    private boolean isSampled(String message, long now) {
+        // -> String.hashCode is fixed by the language spec, the mix spreads similar messages and seconds
+        var h = (message.hashCode() ^ Long.hashCode(now / 1000) * 0x85EBCA6B) * 0x9E3779B9;
+        return Integer.remainderUnsigned(h ^ (h >>> 16), config.infoSampleEvery()) == 0;
+    }
+}
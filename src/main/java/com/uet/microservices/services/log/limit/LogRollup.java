@@ -0,0 +1,58 @@
+package com.uet.microservices.services.log.limit;
+
+import com.uet.microservices.services.log.TaskType;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Message counts per second and level for the last `seconds` seconds, in fixed primitive arrays:
+ * slot = second % seconds, and a slot is cleared when a newer second reuses it.
+ * Only touched from the eventloop thread.
+ */
+public class LogRollup {
+    private static final TaskType[] LEVELS = TaskType.values();
+    private static final int        WIDTH  = LEVELS.length * 2; // -> Stored and dropped count per level
+
+    private final int    seconds;
+    private final long[] slotSecond;
+    private final long[] counts;
+
+    public LogRollup(int seconds) {
+        this.seconds    = Math.max(1, seconds);
+        this.slotSecond = new long[this.seconds];
+        this.counts     = new long[this.seconds * WIDTH];
+        Arrays.fill(slotSecond, -1);
+    }
+
+    public void record(long now, TaskType level, boolean stored) {
+        var second = now / 1000;
+        var slot   = (int) (second % seconds);
+        if (slotSecond[slot] != second) {
+            slotSecond[slot] = second;
+            Arrays.fill(counts, slot * WIDTH, (slot + 1) * WIDTH, 0);
+        }
+        counts[slot * WIDTH + level.ordinal() * 2 + (stored ? 0 : 1)]++;
+    }
+
+    /* CSV of the last `last` seconds until now, oldest first, seconds without messages are skipped */
+    public String toCsv(long now, int last) {
+        var sb = new StringBuilder("second");
+        for (var level : LEVELS) {
+            var name = level.name().toLowerCase(Locale.ROOT);
+            sb.append(',').append(name).append(',').append(name).append("_dropped");
+        }
+        sb.append('\n');
+
+        var current = now / 1000;
+        for (var second = current - Math.min(last, seconds) + 1; second <= current; second++) {
+            var slot = (int) (second % seconds);
+            if (slotSecond[slot] != second) continue;
+
+            sb.append(second);
+            for (int i = 0; i < WIDTH; i++) sb.append(',').append(counts[slot * WIDTH + i]);
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,27 @@
+package com.uet.microservices.services.log.limit;
+
+/* Refills ratePerSec tokens per second up to burst, one token per message. Only touched from the eventloop thread */
+public class TokenBucket {
+    private final double ratePerMs;
+    private final double burst;
+    private       double tokens;
+    private       long   lastRefill;
+
+    public TokenBucket(double ratePerSec, double burst, long now) {
+        this.ratePerMs  = ratePerSec / 1000;
+        this.burst      = burst;
+        this.tokens     = burst;
+        this.lastRefill = now;
+    }
+
+    public boolean tryTake(long now) {
+        if (now > lastRefill) {
+            tokens     = Math.min(burst, tokens + (now - lastRefill) * ratePerMs);
+            lastRefill = now;
+        }
+        if (tokens < 1) return false;
+
+        tokens--;
+        return true;
+    }
+}
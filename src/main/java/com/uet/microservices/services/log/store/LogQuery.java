@@ -0,0 +1,18 @@
+package com.uet.microservices.services.log.store;
+
+import com.uet.microservices.services.log.TaskType;
+
+import java.util.List;
+
+/**
+ * Filters of a log search, all of them must match.
+ * - level: null for every level
+ * - fromTs, toTs: inclusive epoch millis
+ * - tokens: every token must be in the message, see SegmentIndex.tokenize
+ * - cursor: first offset to return, the nextCursor of the previous page
+ */
+public record LogQuery(TaskType level, long fromTs, long toTs, List<String> tokens, long cursor, int limit) {
+    public record Page(List<LogRecord> records, long nextCursor) {
+        public static final long NO_MORE = -1;
+    }
+}
@@ -0,0 +1,12 @@
+package com.uet.microservices.services.log.store;
+
+import com.uet.microservices.services.log.TaskType;
+
+import java.time.Instant;
+
+public record LogRecord(long offset, long timestamp, TaskType level, String message) {
+    @Override
+    public String toString() {
+        return offset + " " + Instant.ofEpochMilli(timestamp) + " " + level + " " + message;
+    }
+}
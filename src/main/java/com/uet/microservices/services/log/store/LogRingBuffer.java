@@ -0,0 +1,74 @@
+package com.uet.microservices.services.log.store;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring buffer for many producers and a single consumer.
+ * Each slot has a sequence number: a producer claims a position with one CAS and publishes the slot by
+ * moving its sequence, the consumer frees the slot by moving the sequence one lap ahead.
+ * Producers are eventloop threads, the consumer is the writer thread of SegmentedLogStore.
+ */
+public class LogRingBuffer<E> {
+    private final int                     capacity;
+    private final int                     mask;
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray         sequences;
+    private final AtomicLong              tail; // -> Next position to claim by producers
+    private       long                    head; // -> Next position to read, consumer only
+
+    public LogRingBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+
+        this.capacity  = capacity;
+        this.mask      = capacity - 1;
+        this.slots     = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        this.tail      = new AtomicLong();
+        for (int i = 0; i < capacity; i++) sequences.set(i, i);
+    }
+
+    /* Return false when the buffer is full */
+    public boolean offer(E element) {
+        while (true) {
+            var pos  = tail.get();
+            var idx  = (int) (pos & mask);
+            var diff = sequences.get(idx) - pos;
+
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots.lazySet(idx, element);
+                    sequences.set(idx, pos + 1); // -> Publish to consumer
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false; // -> Consumer has not freed this slot yet
+            }
+            // -> Another producer claimed this position, try the next one
+        }
+    }
+
+    /* Consumer only, return null when nothing is published */
+    public E poll() {
+        var idx = (int) (head & mask);
+        if (sequences.get(idx) != head + 1) return null;
+
+        var element = slots.get(idx);
+        slots.lazySet(idx, null);
+        sequences.set(idx, head + capacity); // -> Free the slot for the next lap
+        head++;
+        return element;
+    }
+
+    /* Consumer only, true while the next position is not published */
+    public boolean isEmpty() {
+        return sequences.get((int) (head & mask)) != head + 1;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
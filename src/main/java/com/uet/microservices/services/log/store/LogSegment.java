@@ -0,0 +1,180 @@
+package com.uet.microservices.services.log.store;
+
+import com.uet.microservices.services.log.TaskType;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * One memory-mapped file of the log, named by the offset of its first record.
+ * Record layout: size (int) | crc (int) | timestamp (long) | level (byte) | message (UTF-8), size counts
+ * the bytes after crc. A size of 0 ends the segment, so a torn or zeroed tail is found again on recovery.
+ * Written by the writer thread of SegmentedLogStore. Query threads only read records which are flushed.
+ * A sealed segment is a full one from an earlier run: it is mapped read-only and never written.
+ */
+public class LogSegment {
+    public static final String SUFFIX       = ".log";
+    public static final int    HEADER_BYTES = 4 + 4 + 8 + 1;
+
+    private final    boolean          sealed;
+    private final    long             baseOffset;
+    private final    Path             path;
+    private final    FileChannel      channel;
+    private final    MappedByteBuffer buffer;
+    private final    CRC32            crc;
+    private final    SegmentIndex     index;
+    private          long             nextOffset;
+    private volatile int              committed; // -> Records which are flushed and visible to queries
+
+    private LogSegment(boolean sealed, long baseOffset, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.sealed     = sealed;
+        this.baseOffset = baseOffset;
+        this.path       = path;
+        this.channel    = channel;
+        this.buffer     = buffer;
+        this.crc        = new CRC32();
+        this.index      = new SegmentIndex();
+        this.nextOffset = baseOffset;
+    }
+
+    /* Open or create the segment, then move to the end of its valid records */
+    public static LogSegment open(Path dir, long baseOffset, int capacity) throws IOException {
+        var path    = dir.resolve(fileName(baseOffset));
+        var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        var size    = Math.max(capacity, channel.size());
+        var buffer  = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+        var segment = new LogSegment(false, baseOffset, path, channel, buffer);
+        segment.recover();
+        return segment;
+    }
+
+    /* Open a segment of an earlier run for queries only, its file and modification time are left as they are */
+    public static LogSegment openSealed(Path dir, long baseOffset) throws IOException {
+        var path    = dir.resolve(fileName(baseOffset));
+        var channel = FileChannel.open(path, StandardOpenOption.READ);
+        var buffer  = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+        var segment = new LogSegment(true, baseOffset, path, channel, buffer);
+        segment.recover();
+        return segment;
+    }
+
+    public static String fileName(long baseOffset) {
+        return String.format("%020d%s", baseOffset, SUFFIX);
+    }
+
+    public static long parseBaseOffset(Path path) {
+        var name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    public boolean fits(int messageBytes) {
+        return buffer.remaining() >= HEADER_BYTES + messageBytes + 4; // -> Keep room for the end marker
+    }
+
+    /* Return the offset of the appended record, message is the UTF-8 bytes of text */
+    public long append(long timestamp, TaskType level, String text, byte[] message) {
+        var start = buffer.position();
+        buffer.putInt(0) // -> Size is written last, a crash in between leaves the end marker
+              .putInt(0)
+              .putLong(timestamp)
+              .put((byte) level.ordinal())
+              .put(message);
+
+        crc.reset();
+        crc.update(buffer.duplicate().position(start + 8).limit(buffer.position()));
+        buffer.putInt(start + 4, (int) crc.getValue());
+        buffer.putInt(start, buffer.position() - start - 8);
+        index.add(start, timestamp, level, text);
+        return nextOffset++;
+    }
+
+    public void flush() {
+        if (sealed) return;
+        buffer.force();
+        committed = (int) (nextOffset - baseOffset); // -> Publish the records to query threads
+    }
+
+    /* Matching records from offset cursor on, at most limit. Called from query threads */
+    public void query(LogQuery query, long cursor, int limit, List<LogRecord> out) {
+        var end  = committed;
+        var from = (int) Math.max(0, cursor - baseOffset);
+        if (from >= end || !index.overlaps(query.fromTs(), query.toTs())) return;
+
+        while (from < end && out.size() < limit) {
+            var candidates = index.candidates(query, from, end, limit - out.size());
+            if (candidates.length == 0) return;
+
+            for (var record : candidates) {
+                var found = read(record);
+                if (found.timestamp() >= query.fromTs() && found.timestamp() <= query.toTs()) out.add(found);
+            }
+            from = candidates[candidates.length - 1] + 1;
+        }
+    }
+
+    public LogRecord read(int record) {
+        var view      = buffer.duplicate();
+        var start     = index.getPosition(record);
+        var size      = view.getInt(start);
+        var timestamp = view.getLong(start + 8);
+        var level     = TaskType.values()[view.get(start + 16)];
+        var message   = new byte[size - 9];
+        view.get(start + HEADER_BYTES, message);
+        return new LogRecord(baseOffset + record, timestamp, level, new String(message, StandardCharsets.UTF_8));
+    }
+
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    public void delete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+
+    public long getNextOffset() {
+        return nextOffset;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    private void recover() {
+        buffer.position(0);
+        while (buffer.remaining() >= HEADER_BYTES) {
+            var start = buffer.position();
+            var size  = buffer.getInt(start);
+            if (size <= 0 || start + 8 + size > buffer.limit()) break;
+
+            crc.reset();
+            crc.update(buffer.duplicate().position(start + 8).limit(start + 8 + size));
+            if ((int) crc.getValue() != buffer.getInt(start + 4)) break;
+
+            var message = new byte[size - 9];
+            buffer.get(start + HEADER_BYTES, message);
+            index.add(
+                start,
+                buffer.getLong(start + 8),
+                TaskType.values()[buffer.get(start + 16)],
+                new String(message, StandardCharsets.UTF_8)
+            );
+            buffer.position(start + 8 + size);
+            nextOffset++;
+        }
+        committed = (int) (nextOffset - baseOffset);
+
+        // -> Anything after the last valid record is overwritten
+        if (!sealed && buffer.remaining() >= 4) buffer.putInt(buffer.position(), 0);
+    }
+}
@@ -0,0 +1,94 @@
+package com.uet.microservices.services.log.store;
+
+import java.util.Arrays;
+
+/**
+ * Ascending record numbers, stored as varint deltas: most deltas of a busy token take a single byte.
+ * Every SKIP_INTERVAL values a skip pointer keeps the byte position and the value before it, so decoding
+ * can start near a record instead of at the first one.
+ * Append-only: bytes before length never change, so a View taken under the writer's lock is read without it.
+ */
+public class PostingList {
+    private static final int SKIP_INTERVAL = 64;
+
+    private byte[] bytes     = new byte[16];
+    private int[]  skipPos   = new int[4];
+    private int[]  skipLast  = new int[4];
+    private int    length;
+    private int    count;
+    private int    skips;
+    private int    last      = -1;
+
+    public void add(int value) {
+        if (value <= last) return; // -> A token repeated in one message is stored once
+
+        if (count % SKIP_INTERVAL == 0) {
+            if (skips == skipPos.length) {
+                skipPos  = Arrays.copyOf(skipPos, skips * 2);
+                skipLast = Arrays.copyOf(skipLast, skips * 2);
+            }
+            skipPos[skips]  = length;
+            skipLast[skips] = last;
+            skips++;
+        }
+
+        var delta = value - last;
+        last = value;
+        count++;
+
+        if (length + 5 > bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        while ((delta & ~0x7F) != 0) {
+            bytes[length++] = (byte) ((delta & 0x7F) | 0x80);
+            delta >>>= 7;
+        }
+        bytes[length++] = (byte) delta;
+    }
+
+    /* Snapshot of the values added so far, take it under the same lock as add */
+    public View view() {
+        return new View(bytes, length, count, skipPos, skipLast, skips);
+    }
+
+    public record View(byte[] bytes, int length, int count, int[] skipPos, int[] skipLast, int skips) {
+        /* Values in [from, to), ascending */
+        public int[] toArray(int from, int to) {
+            if (count == 0 || from >= to) return new int[0];
+
+            var values = new int[Math.min(count, to - from)];
+            var size   = 0;
+            var skip   = lastSkipBefore(from);
+            var value  = skipLast[skip];
+            var pos    = skipPos[skip];
+
+            while (pos < length && size < values.length) {
+                var delta = 0;
+                var shift = 0;
+                byte b;
+                do {
+                    b = bytes[pos++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+
+                value += delta;
+                if (value >= to) break;
+                if (value >= from) values[size++] = value;
+            }
+
+            return Arrays.copyOf(values, size);
+        }
+
+        /* Last skip pointer whose values before it are all below from, the first one is always usable */
+        private int lastSkipBefore(int from) {
+            if (skips == 0) return 0;
+
+            int lo = 0, hi = skips - 1;
+            while (lo < hi) {
+                var mid = (lo + hi + 1) >>> 1;
+                if (skipLast[mid] < from) lo = mid;
+                else hi = mid - 1;
+            }
+            return lo;
+        }
+    }
+}
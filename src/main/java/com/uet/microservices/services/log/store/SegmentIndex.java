@@ -0,0 +1,133 @@
+package com.uet.microservices.services.log.store;
+
+import com.uet.microservices.services.log.TaskType;
+
+import java.util.*;
+
+/**
+ * In-memory indexes of one segment, filled by the writer thread and read by queries.
+ * Record numbers are offsets relative to the first record of the segment.
+ * - positions: file position of every record
+ * - sparse time index: min and max timestamp of each block of BLOCK_RECORDS records, so a time range
+ *   skips whole blocks without reading them
+ * - a posting list per level and an inverted token index
+ * Queries only take array references and lengths under the lock, everything is append-only so they decode
+ * without holding it and never stall the writer.
+ */
+public class SegmentIndex {
+    public static final  int BLOCK_RECORDS      = 256;
+    private static final int MAX_MESSAGE_TOKENS = 64;
+
+    private final PostingList[]            levels;
+    private final Map<String, PostingList> tokens;
+    private       int[]                    positions = new int[1024];
+    private       long[]                   blockMin  = new long[16];
+    private       long[]                   blockMax  = new long[16];
+    private       int                      count;
+    private       long                     minTs     = Long.MAX_VALUE;
+    private       long                     maxTs     = Long.MIN_VALUE;
+
+    public SegmentIndex() {
+        this.levels = new PostingList[TaskType.values().length];
+        this.tokens = new HashMap<>();
+        for (int i = 0; i < levels.length; i++) levels[i] = new PostingList();
+    }
+
+    /* Lower-cased runs of letters and digits, at least 2 chars. Also used to parse query tokens */
+    public static Set<String> tokenize(String text) {
+        var result = new LinkedHashSet<String>();
+        for (var token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (token.length() >= 2) result.add(token);
+            if (result.size() == MAX_MESSAGE_TOKENS) break;
+        }
+        return result;
+    }
+
+    public synchronized void add(int position, long timestamp, TaskType level, String message) {
+        var record = count++;
+        var block  = record / BLOCK_RECORDS;
+        if (record == positions.length) positions = Arrays.copyOf(positions, positions.length * 2);
+        if (block == blockMin.length) {
+            blockMin = Arrays.copyOf(blockMin, blockMin.length * 2);
+            blockMax = Arrays.copyOf(blockMax, blockMax.length * 2);
+        }
+
+        positions[record] = position;
+        if (record % BLOCK_RECORDS == 0) {
+            blockMin[block] = timestamp;
+            blockMax[block] = timestamp;
+        } else {
+            blockMin[block] = Math.min(blockMin[block], timestamp);
+            blockMax[block] = Math.max(blockMax[block], timestamp);
+        }
+        minTs = Math.min(minTs, timestamp);
+        maxTs = Math.max(maxTs, timestamp);
+
+        levels[level.ordinal()].add(record);
+        for (var token : tokenize(message)) tokens.computeIfAbsent(token, $ -> new PostingList()).add(record);
+    }
+
+    public synchronized int getPosition(int record) {
+        return positions[record];
+    }
+
+    public synchronized boolean overlaps(long fromTs, long toTs) {
+        return count > 0 && minTs <= toTs && maxTs >= fromTs;
+    }
+
+    /**
+     * Records in [from, to) which may match: in a block overlapping the time range, of the level and
+     * with every token. Only the timestamp of each record is left to check, at most max records
+     */
+    public int[] candidates(LogQuery query, int from, int to, int max) {
+        PostingList.View levelView  = null;
+        var              tokenViews = new ArrayList<PostingList.View>(query.tokens().size());
+        long[]           mins;
+        long[]           maxs;
+        synchronized (this) {
+            if (query.level() != null) levelView = levels[query.level().ordinal()].view();
+            for (var token : query.tokens()) {
+                var postings = tokens.get(token);
+                if (postings == null) return new int[0];
+                tokenViews.add(postings.view());
+            }
+            mins = blockMin;
+            maxs = blockMax;
+        }
+
+        // -> Start from the most selective posting list, or every record when there is none
+        int[] result = levelView == null ? null : levelView.toArray(from, to);
+        for (var view : tokenViews) {
+            result = result == null ? view.toArray(from, to) : intersect(result, view.toArray(from, to));
+        }
+
+        var candidates = new int[Math.min(max, result == null ? to - from : result.length)];
+        var size       = 0;
+        var length     = result == null ? to - from : result.length;
+        for (int i = 0; i < length && size < candidates.length; i++) {
+            var record = result == null ? from + i : result[i];
+            var block  = record / BLOCK_RECORDS;
+            if (mins[block] > query.toTs() || maxs[block] < query.fromTs()) {
+                if (result == null) i = (block + 1) * BLOCK_RECORDS - from - 1; // -> Skip the rest of the block
+                continue;
+            }
+            candidates[size++] = record;
+        }
+        return Arrays.copyOf(candidates, size);
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        var result = new int[Math.min(a.length, b.length)];
+        var size   = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else {
+                result[size++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+}
@@ -0,0 +1,259 @@
+package com.uet.microservices.services.log.store;
+
+import com.uet.microservices.services.log.LogTask;
+import io.activej.eventloop.Eventloop;
+import io.activej.promise.Promise;
+import io.activej.promise.SettablePromise;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Append-only log of LogTasks, stored in memory-mapped segment files.
+ * - The eventloop only puts records into a lock-free ring buffer, a single writer thread does the file work.
+ *   An idle writer parks until an append unparks it, or until the flush of its pending group is due
+ * - Group commit: records are forced to disk once per flushRecords records or flushIntervalMs, and the
+ *   promises of all records of the group are completed together after that
+ * - A new segment is started when the current one is full, old segments are deleted by count and by age
+ */
+public class SegmentedLogStore {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentedLogStore.class);
+
+    public record Config(
+        Path dir,
+        int segmentBytes,
+        int ringCapacity,
+        int flushRecords,
+        long flushIntervalMs,
+        int retentionSegments,
+        long retentionMs
+    ) {
+        /* -Dlog.store.<name>, the directory defaults to log-data/<serviceName> */
+        public static Config fromSystemProperties(String serviceName) {
+            return new Config(
+                Path.of(System.getProperty("log.store.dir", "log-data/" + serviceName)),
+                Integer.getInteger("log.store.segment-bytes", 64 * 1024 * 1024),
+                Integer.getInteger("log.store.ring-capacity", 1 << 16),
+                Integer.getInteger("log.store.flush-records", 1000),
+                Long.getLong("log.store.flush-ms", 50),
+                Integer.getInteger("log.store.retention-segments", 16),
+                Long.getLong("log.store.retention-ms", Duration.ofDays(7).toMillis())
+            );
+        }
+    }
+
+    private final    Eventloop            eventloop;
+    private final    Config               config;
+    private final    LogRingBuffer<Entry> ring;
+    private final    List<LogSegment>     segments; // -> Oldest first, the last one is active. Changed by writer only
+    private final    Thread               writer;
+    private volatile boolean              running;
+    private volatile boolean              parked; // -> Writer sleeps until an append wakes it or its group is due
+
+    public SegmentedLogStore(Eventloop eventloop, Config config) {
+        this.eventloop = eventloop;
+        this.config    = config;
+        this.ring      = new LogRingBuffer<>(config.ringCapacity());
+        this.segments  = new CopyOnWriteArrayList<>();
+        this.writer    = new Thread(this::runWriter, "log-store-writer");
+        this.writer.setDaemon(true);
+    }
+
+    /* Open existing segments, the active one is recovered up to its last valid record */
+    public void start() throws IOException {
+        Files.createDirectories(config.dir());
+        try (var files = Files.list(config.dir())) {
+            var bases = files.filter(path -> path.getFileName().toString().endsWith(LogSegment.SUFFIX))
+                             .map(LogSegment::parseBaseOffset)
+                             .sorted()
+                             .toList();
+            for (int i = 0; i < bases.size(); i++) {
+                // -> Older segments are read-only, writing to their mapping would reset their age for retention
+                var base = bases.get(i);
+                segments.add(
+                    i < bases.size() - 1
+                        ? LogSegment.openSealed(config.dir(), base)
+                        : LogSegment.open(config.dir(), base, config.segmentBytes())
+                );
+            }
+        }
+        if (segments.isEmpty()) segments.add(LogSegment.open(config.dir(), 0, config.segmentBytes()));
+        applyRetention();
+
+        running = true;
+        writer.start();
+        logger.info(">> Log store at {}, next offset: {}", config.dir(), active().getNextOffset());
+    }
+
+    /* Completed once the record is on disk, fails at once when the buffer is full */
+    public Promise<Void> append(LogTask task) {
+        var entry = new Entry(System.currentTimeMillis(), task);
+        if (!running || !ring.offer(entry)) {
+            return Promise.ofException(new RejectedExecutionException("Log store is full"));
+        }
+        if (parked) LockSupport.unpark(writer); // -> Read after the offer, see runWriter
+        return entry.promise;
+    }
+
+    /* Blocking: read matching records of the flushed part of the log, oldest first */
+    public LogQuery.Page query(LogQuery query) {
+        var records = new ArrayList<LogRecord>();
+        for (var segment : segments) {
+            if (records.size() >= query.limit()) break;
+            segment.query(query, query.cursor(), query.limit(), records);
+        }
+
+        var next = records.size() < query.limit()
+            ? LogQuery.Page.NO_MORE
+            : records.get(records.size() - 1).offset() + 1;
+        return new LogQuery.Page(records, next);
+    }
+
+    /* Write what is buffered, then stop the writer */
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runWriter() {
+        var group        = new ArrayList<Entry>();
+        var groupStarted = 0L;
+        var flushNanos   = Duration.ofMillis(config.flushIntervalMs()).toNanos();
+
+        while (true) {
+            var entry = ring.poll();
+            if (entry != null) {
+                if (group.isEmpty()) groupStarted = System.nanoTime();
+                if (write(entry, group)) group.add(entry);
+            }
+
+            // -> One clock read for both, so a group which is not due always parks for a positive time
+            var now = System.nanoTime();
+            var due = !group.isEmpty() &&
+                      (group.size() >= config.flushRecords() || now - groupStarted >= flushNanos);
+            if (due) commit(group);
+
+            if (entry == null) {
+                if (!running) break;
+                if (group.isEmpty()) park();
+                else if (!due) park(Math.max(1, groupStarted + flushNanos - now));
+            }
+        }
+
+        commit(group);
+        try {
+            active().close();
+        } catch (IOException e) {
+            logger.warn(">> Cannot close segment {}: {}", active().getPath(), e.getMessage());
+        }
+    }
+
+    /**
+     * Park until unparked, or at most nanos while a group waits for its flush.
+     * parked is set before the buffer is checked again and append reads it after its offer, so a record is never
+     * left in the buffer by a sleeping writer: either the writer sees the record, or the producer sees parked
+     */
+    private void park(long nanos) {
+        parked = true;
+        if (ring.isEmpty() && running) LockSupport.parkNanos(this, nanos);
+        parked = false;
+    }
+
+    /* Only for an empty group, nothing is due until an append unparks the writer */
+    private void park() {
+        parked = true;
+        if (ring.isEmpty() && running) LockSupport.park(this);
+        parked = false;
+    }
+
+    /* Return false if the record is not written, its promise is already failed */
+    private boolean write(Entry entry, List<Entry> group) {
+        var message = entry.task.message.getBytes(StandardCharsets.UTF_8);
+        try {
+            if (!active().fits(message.length)) {
+                commit(group); // -> Records of the old segment are forced before it is closed
+                roll(message.length);
+            }
+            active().append(entry.timestamp, entry.task.taskType, entry.task.message, message);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            eventloop.execute(() -> entry.promise.setException(e instanceof IOException io ? io : new IOException(e)));
+            return false;
+        }
+    }
+
+    private void commit(List<Entry> group) {
+        if (group.isEmpty()) return;
+
+        active().flush();
+        var committed = List.copyOf(group);
+        group.clear();
+        eventloop.execute(() -> committed.forEach(entry -> entry.promise.set(null))); // -> One eventloop task per group
+    }
+
+    private void roll(int messageBytes) throws IOException {
+        var capacity = Math.max(config.segmentBytes(), LogSegment.HEADER_BYTES + messageBytes + 4);
+        var old      = active();
+        old.close();
+        segments.add(LogSegment.open(config.dir(), old.getNextOffset(), capacity));
+        logger.info(">> Rolled log segment, next offset: {}", old.getNextOffset());
+        applyRetention();
+    }
+
+    private void applyRetention() {
+        var expiredBefore = System.currentTimeMillis() - config.retentionMs();
+        while (segments.size() > 1) {
+            var oldest  = segments.get(0);
+            var tooMany = segments.size() > config.retentionSegments();
+            if (!tooMany && lastModified(oldest.getPath()) >= expiredBefore) break;
+
+            try {
+                oldest.delete();
+                segments.remove(0);
+                logger.info(">> Deleted log segment {}", oldest.getPath());
+            } catch (IOException e) {
+                logger.warn(">> Cannot delete segment {}: {}", oldest.getPath(), e.getMessage());
+                break;
+            }
+        }
+    }
+
+    private LogSegment active() {
+        return segments.get(segments.size() - 1);
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static class Entry {
+        final long                  timestamp;
+        final LogTask               task;
+        final SettablePromise<Void> promise;
+
+        Entry(long timestamp, LogTask task) {
+            this.timestamp = timestamp;
+            this.task      = task;
+            this.promise   = new SettablePromise<>();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.uet.microservices.services.master;
+
+import io.activej.serializer.annotations.Deserialize;
+import io.activej.serializer.annotations.Serialize;
+
+import java.util.List;
+
+/* Many CalcRequests for the same worker in one RPC frame. Reply is CalcBatchResult with the same order */
+public class CalcBatchRequest {
+    public @Serialize(order = 0) List<CalcRequest> requests;
+
+    public CalcBatchRequest(@Deserialize("requests") List<CalcRequest> requests) {
+        this.requests = requests;
+    }
+
+    @Override
+    public String toString() {
+        return "CalcBatchRequest(" + requests.size() + " ranges)";
+    }
+}
@@ -0,0 +1,35 @@
+package com.uet.microservices.services.master;
+
+import com.uet.microservices.lib.model.NodeLoad;
+import com.uet.microservices.lib.protocol.RpcWithNodeLoad;
+import io.activej.serializer.annotations.Deserialize;
+import io.activej.serializer.annotations.Serialize;
+
+import java.util.Arrays;
+
+/* Results of a CalcBatchRequest in the same order, a failed range has failed[i] set and values[i] is meaningless */
+public class CalcBatchResult implements RpcWithNodeLoad {
+    public @Serialize(order = 0) long[]    values;
+    public @Serialize(order = 1) NodeLoad  nodeLoad;
+    public @Serialize(order = 2) boolean[] failed;
+
+    public CalcBatchResult(
+        @Deserialize("values") long[] values,
+        @Deserialize("nodeLoad") NodeLoad nodeLoad,
+        @Deserialize("failed") boolean[] failed
+    ) {
+        this.values   = values;
+        this.nodeLoad = nodeLoad;
+        this.failed   = failed;
+    }
+
+    @Override
+    public NodeLoad getNodeLoad() {
+        return nodeLoad;
+    }
+
+    @Override
+    public String toString() {
+        return "CalcBatchResult(" + Arrays.toString(values) + ", failed=" + Arrays.toString(failed) + ", " + nodeLoad + ")";
+    }
+}
@@ -0,0 +1,18 @@
+package com.uet.microservices.services.master;
+
+import io.activej.serializer.annotations.Deserialize;
+import io.activej.serializer.annotations.Serialize;
+
+/* Nobody waits for the requests of this flow anymore: drop its tasks and cancel the work it handed to other nodes */
+public class CalcCancel {
+    public @Serialize(order = 0) long flowId;
+
+    public CalcCancel(@Deserialize("flowId") long flowId) {
+        this.flowId = flowId;
+    }
+
+    @Override
+    public String toString() {
+        return "CalcCancel(" + flowId + ")";
+    }
+}
@@ -1,19 +1,68 @@
 package com.uet.microservices.services.master;
 
+import com.uet.microservices.services.worker.TaskPriority;
 import io.activej.serializer.annotations.Deserialize;
 import io.activej.serializer.annotations.Serialize;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
 public class CalcRequest {
-    public @Serialize(order = 0) int from;
-    public @Serialize(order = 1) int to;
+    public @Serialize(order = 0) int          from;
+    public @Serialize(order = 1) int          to;
+    public @Serialize(order = 2) int          depth;    // -> Level in fan-out tree, 0 is the request from master
+    public @Serialize(order = 3) long         deadline; // -> Epoch millis after which nobody waits for the result, 0 is no deadline
+    public @Serialize(order = 4) long         flowId;   // -> Id of the originating request, shared by all of its sub-requests
+    public @Serialize(order = 5) TaskPriority priority;
+
+    public CalcRequest(
+        @Deserialize("from") int from,
+        @Deserialize("to") int to,
+        @Deserialize("depth") int depth,
+        @Deserialize("deadline") long deadline,
+        @Deserialize("flowId") long flowId,
+        @Deserialize("priority") TaskPriority priority
+    ) {
+        this.from     = from;
+        this.to       = to;
+        this.depth    = depth;
+        this.deadline = deadline;
+        this.flowId   = flowId;
+        this.priority = priority;
+    }
+
+    /* A new originating request: new flow, priority by its size */
+    public CalcRequest(int from, int to, int depth, long deadline) {
+        this(from, to, depth, deadline, ThreadLocalRandom.current().nextLong(), TaskPriority.of((long) to - from + 1));
+    }
+
+    public CalcRequest(int from, int to) {
+        this(from, to, 0, 0);
+    }
+
+    public boolean isExpired() {
+        return deadline > 0 && System.currentTimeMillis() > deadline;
+    }
+
+    /* Split into (at most) parts sub-requests of one level deeper */
+    public List<CalcRequest> split(int parts) {
+        var size     = (long) to - from + 1; // -> Does not fit an int for the full int range
+        var count    = (int) Math.max(1, Math.min(parts, size));
+        var children = new ArrayList<CalcRequest>(count);
+        var cur      = from;
+
+        for (int i = 0; i < count; i++) {
+            var len = size / count + (i < size % count ? 1 : 0);
+            children.add(new CalcRequest(cur, (int) (cur + len - 1), depth + 1, deadline, flowId, priority));
+            cur += (int) len;
+        }
 
-    public CalcRequest(@Deserialize("from") int from, @Deserialize("to") int to) {
-        this.from = from;
-        this.to   = to;
+        return children;
     }
 
     @Override
     public String toString() {
-        return "CalcRequest(" + from + ", " + to + ")";
+        return "CalcRequest(" + from + ", " + to + ", depth=" + depth + ", " + priority + ")";
     }
 }
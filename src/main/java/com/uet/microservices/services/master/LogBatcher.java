@@ -0,0 +1,104 @@
+package com.uet.microservices.services.master;
+
+import com.uet.microservices.lib.model.SeedNode;
+import com.uet.microservices.lib.service.SeedNodeManager;
+import com.uet.microservices.services.ServiceType;
+import com.uet.microservices.services.log.LogBatch;
+import com.uet.microservices.services.log.LogMessage;
+import io.activej.eventloop.Eventloop;
+import io.activej.promise.Promise;
+import io.activej.promise.Promises;
+import io.activej.promise.SettablePromise;
+import io.activej.reactor.schedule.ScheduledRunnable;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Collect log messages per owning LOG node and send them as one LogBatch frame, when maxMessages are
+ * collected or lingerMs after the first one, whichever comes first.
+ * Every caller of a batch is completed when the LOG node accepts the whole batch, or failed when it cannot be sent.
+ * Only touched from the eventloop thread.
+ */
+public class LogBatcher {
+    private final Eventloop              eventloop;
+    private final SeedNodeManager        seedNodeManager;
+    private final int                    maxMessages;
+    private final long                   lingerMs;
+    private final Map<SeedNode, Pending> pending;
+
+    public LogBatcher(Eventloop eventloop, SeedNodeManager seedNodeManager, int maxMessages, long lingerMs) {
+        this.eventloop       = eventloop;
+        this.seedNodeManager = seedNodeManager;
+        this.maxMessages     = Math.max(1, maxMessages);
+        this.lingerMs        = lingerMs;
+        this.pending         = new HashMap<>();
+    }
+
+    /* -Dmaster.log-batch.max-messages (default 256), -Dmaster.log-batch.linger-ms (default 5) */
+    public static LogBatcher fromConfig(Eventloop eventloop, SeedNodeManager seedNodeManager) {
+        return new LogBatcher(
+            eventloop,
+            seedNodeManager,
+            Integer.getInteger("master.log-batch.max-messages", 256),
+            Long.getLong("master.log-batch.linger-ms", 5)
+        );
+    }
+
+    public Promise<Void> add(String key, String message) {
+        var node  = this.seedNodeManager.routeByKey(ServiceType.LOG, key);
+        var batch = this.pending.computeIfAbsent(node, $ -> new Pending());
+        if (batch.messages.isEmpty() && lingerMs > 0) {
+            batch.timer = eventloop.scheduleBackground(
+                Instant.ofEpochMilli(eventloop.currentTimeMillis() + lingerMs),
+                () -> flush(node)
+            );
+        }
+
+        batch.messages.add(new LogMessage(key, message));
+        var result = batch.result;
+        if (batch.messages.size() >= maxMessages || lingerMs <= 0) flush(node);
+        return result;
+    }
+
+    private void flush(SeedNode node) {
+        var batch = this.pending.remove(node);
+        if (batch == null) return;
+        if (batch.timer != null) batch.timer.cancel();
+
+        Promise<?> sent;
+        try {
+            sent = this.seedNodeManager.sendRequest(node, new LogBatch(batch.messages, false));
+        } catch (RuntimeException e) {
+            sent = reroute(node, batch.messages, e);
+        }
+        sent.whenComplete(($, e) -> {
+            if (e == null) batch.result.set(null);
+            else batch.result.setException(e);
+        });
+    }
+
+    /* The owner was picked up to lingerMs ago and has left since, so the messages go to their owners now, once */
+    private Promise<Void> reroute(SeedNode gone, List<LogMessage> messages, RuntimeException cause) {
+        try {
+            var groups = new LinkedHashMap<SeedNode, List<LogMessage>>();
+            for (var msg : messages) {
+                var owner = this.seedNodeManager.routeByKey(ServiceType.LOG, msg.key);
+                if (owner.equals(gone)) return Promise.ofException(cause);
+                groups.computeIfAbsent(owner, $ -> new ArrayList<>()).add(msg);
+            }
+
+            var promises = new ArrayList<Promise<?>>(groups.size());
+            groups.forEach((owner, lst) -> promises.add(this.seedNodeManager.sendRequest(owner, new LogBatch(lst, false))));
+            return Promises.all(promises);
+        } catch (RuntimeException e) {
+            return Promise.ofException(e); // -> No LOG node is left
+        }
+    }
+
+    private static class Pending {
+        final List<LogMessage>      messages = new ArrayList<>();
+        final SettablePromise<Void> result   = new SettablePromise<>();
+        ScheduledRunnable           timer;
+    }
+}
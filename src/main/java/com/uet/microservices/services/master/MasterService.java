@@ -1,25 +1,57 @@
 package com.uet.microservices.services.master;
 
 import com.uet.microservices.lib.model.NodeType;
-import com.uet.microservices.lib.protocol.RpcBasicOperation;
+import com.uet.microservices.lib.model.SeedNode;
 import com.uet.microservices.lib.service.AbstractClusterService;
+import com.uet.microservices.lib.service.admission.AdaptiveLimiter;
+import com.uet.microservices.lib.service.admission.AdmissionServlet;
+import com.uet.microservices.lib.service.routing.RoutingStrategies;
 import com.uet.microservices.services.ServiceType;
+import com.uet.microservices.services.log.LogService;
+import com.uet.microservices.services.worker.WorkerService;
+import com.uet.microservices.services.worker.job.JobType;
+import com.uet.microservices.services.worker.job.PrimeCount;
+import com.uet.microservices.services.worker.job.PrimeCountRequest;
+import com.uet.microservices.utils.MyUtils;
+import io.activej.bytebuf.ByteBuf;
+import io.activej.csp.queue.ChannelBuffer;
 import io.activej.eventloop.Eventloop;
 import io.activej.http.AsyncServlet;
+import io.activej.http.HttpHeaders;
+import io.activej.http.HttpRequest;
 import io.activej.http.HttpResponse;
 import io.activej.http.HttpServer;
 import io.activej.http.RoutingServlet;
+import io.activej.promise.Promise;
+import io.activej.promise.Promises;
+import io.activej.promise.SettablePromise;
 import io.activej.rpc.server.RpcRequestHandler;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.util.List;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CancellationException;
 
+import static io.activej.bytebuf.ByteBufStrings.wrapUtf8;
 import static io.activej.http.HttpMethod.GET;
+import static io.activej.http.HttpMethod.POST;
 
 public class MasterService extends AbstractClusterService {
-    private final int webPort;
+    // -> Default time a /test-worker request may take, override per request with 'timeout' query param (ms)
+    private static final long   CALC_TIMEOUT_MS          = Long.getLong("master.calc-timeout-ms", 30_000);
+    private static final int    MAX_BATCH_RANGES         = 256; // -> Ranges per CalcBatchRequest frame
+    private static final int    STREAM_CHUNKS_PER_WORKER = 2;   // -> Default chunks of /test-worker/stream
+    private static final int    DEFAULT_MAX_IN_FLIGHT    = 1000;
+    private static final int    RETRY_AFTER_SECONDS      = 1;
+    // -> "analytical" answers range sums in O(1) on master without any fan-out, override per request with 'mode' query param
+    private static final String CALC_MODE                = System.getProperty("master.calc-mode", "cluster");
+
+    private final int                         webPort;
+    private final Map<RangeKey, InFlightCalc> inFlightCalcs;
+    private final Map<Long, FlowCalcs>        flowCalcs; // -> Calculations in cluster by flow, to cancel a flow nobody waits for
+    private final LogBatcher                  logBatcher;
 
     protected MasterService(
         Eventloop eventloop,
@@ -30,7 +62,11 @@ public class MasterService extends AbstractClusterService {
         int webPort
     ) {
         super(eventloop, discoveryAddr, serviceName, nodeType, seedTypes);
-        this.webPort = webPort;
+        this.webPort       = webPort;
+        this.inFlightCalcs = new HashMap<>();
+        this.flowCalcs     = new HashMap<>();
+        this.logBatcher    = LogBatcher.fromConfig(eventloop, this.seedNodeManager);
+        this.seedNodeManager.withRouting(ServiceType.WORKER, RoutingStrategies.powerOfTwoChoices());
     }
 
     public static MasterService create(Eventloop eventloop, InetSocketAddress discoveryAddr) {
@@ -52,8 +88,8 @@ public class MasterService extends AbstractClusterService {
     @Override
     protected Map<NodeType, List<Class<?>>> getConnectionClassTypes() {
         return Map.of(
-            ServiceType.WORKER, List.of(CalcRequest.class, Integer.class),
-            ServiceType.LOG, List.of(String.class, RpcBasicOperation.class)
+            ServiceType.WORKER, WorkerService.MESSAGE_TYPES,
+            ServiceType.LOG, LogService.MESSAGE_TYPES
         );
     }
 
@@ -64,37 +100,159 @@ public class MasterService extends AbstractClusterService {
     }
 
     private void startWebServer() throws IOException {
+        // -> Messages with the same key go straight to the LOG node owning it, answered when the LogBatch with the
+        //    message is accepted. The key is also the source LOG nodes rate-limit by, by default the client address
         AsyncServlet logHandler = req -> {
-            var sender = this.seedNodeManager.getSender(ServiceType.LOG);
-            var msg    = req.getQueryParameter("msg");
-            return sender.sendRequest(msg)
-                         .map($ -> HttpResponse.ok200().withPlainText("OK").build());
+            var msg = req.getQueryParameter("msg");
+            var key = Optional.ofNullable(req.getQueryParameter("key")).orElse(req.getRemoteAddress().getHostAddress());
+            return logBatcher.add(key, msg)
+                             .map($ -> HttpResponse.ok200().withPlainText("OK").build());
         };
 
+        AdmissionServlet.Validator calcValidator = req -> {
+            parseRange(req.getQueryParameter("range"));
+            parseTimeout(req);
+        };
         AsyncServlet calcHandler = req -> {
-            var range  = req.getQueryParameter("range");
-            var values = range.split("-");
-            var calcRequest = new CalcRequest(
-                Integer.parseInt(values[0]),
-                Integer.parseInt(values[1])
+            var range       = parseRange(req.getQueryParameter("range"));
+            var timeoutMs   = parseTimeout(req);
+            var start       = System.currentTimeMillis();
+            var deadline    = start + timeoutMs;
+            var calcRequest = new CalcRequest(range[0], range[1], 0, deadline);
+
+            return Promises.timeout(Duration.ofMillis(timeoutMs), calculate(calcRequest, isAnalytical(req)))
+                           .map((res, e) -> {
+                               var end      = System.currentTimeMillis();
+                               var duration = end - start;
+                               if (e != null) {
+                                   if (end < deadline) throw e;
+                                   var msg = String.format("Timeout after %dms", duration);
+                                   return HttpResponse.ofCode(504).withPlainText(msg).build();
+                               }
+
+                               var msg = String.format("Value = %d in %dms", res, duration);
+                               return HttpResponse.ok200().withPlainText(msg).build();
+                           });
+        };
+
+        // -> Body is ranges separated by comma or whitespace: "1-10,5-20 30-40", answer is one "from-to=value" per line
+        AdmissionServlet.Validator calcBatchValidator = MasterService::parseTimeout;
+        AsyncServlet calcBatchHandler = req -> req.loadBody().then(body -> {
+            var timeoutMs = parseTimeout(req);
+            var deadline  = System.currentTimeMillis() + timeoutMs;
+            List<CalcRequest> requests;
+            try {
+                requests = Arrays.stream(body.asString(StandardCharsets.UTF_8).trim().split("[,\\s]+"))
+                                 .filter(range -> !range.isEmpty())
+                                 .map(MasterService::parseRange)
+                                 .map(range -> new CalcRequest(range[0], range[1], 0, deadline))
+                                 .toList();
+            } catch (IllegalArgumentException e) {
+                return Promise.of(HttpResponse.ofCode(400).withPlainText("Bad request: " + e.getMessage()).build());
+            }
+
+            var promises = calculateBatch(requests, isAnalytical(req)).stream()
+                                                   .map(promise -> Promises.timeout(Duration.ofMillis(timeoutMs), promise)
+                                                                           .map((res, e) -> e == null ? String.valueOf(res) : "ERROR"))
+                                                   .toList();
+            return Promises.toList(promises)
+                           .map(results -> {
+                               var sb = new StringBuilder();
+                               for (int i = 0; i < requests.size(); i++) {
+                                   var calcRequest = requests.get(i);
+                                   sb.append(calcRequest.from).append('-').append(calcRequest.to)
+                                     .append('=').append(results.get(i)).append('\n');
+                               }
+                               return HttpResponse.ok200().withPlainText(sb.toString()).build();
+                           });
+        });
+
+        // -> Stream one line per finished chunk with its partial sum and running total, then a final "done" line
+        AdmissionServlet.Validator calcStreamValidator = req -> {
+            calcValidator.validate(req);
+            parseChunks(req);
+        };
+        AdmissionServlet.StreamingServlet calcStreamHandler = (req, done) -> {
+            var range     = parseRange(req.getQueryParameter("range"));
+            var timeoutMs = parseTimeout(req);
+            var parts     = parseChunks(req).orElse(Math.max(1, this.seedNodeManager.countNodes(ServiceType.WORKER)) * STREAM_CHUNKS_PER_WORKER);
+            var start     = System.currentTimeMillis();
+            var deadline  = start + timeoutMs;
+            var chunks = new CalcRequest(range[0], range[1])
+                .split(parts)
+                .stream()
+                .map(chunk -> new CalcRequest(chunk.from, chunk.to, 0, deadline, chunk.flowId, chunk.priority)) // -> One flow for the whole stream
+                .toList();
+
+            // -> Only the running total is kept, lines are handed to the HTTP stream as soon as chunks finish.
+            //    A stream closed before its end means the client is gone, then the chunks are cancelled in cluster
+            var buffer    = new ChannelBuffer<ByteBuf>(0, chunks.size() + 2);
+            var abandoned = new SettablePromise<Void>();
+            var body      = buffer.getSupplier()
+                                  .withEndOfStream(eos -> eos.whenComplete(($, e) -> {
+                                      if (e == null) {
+                                          done.trySet(null);
+                                      } else {
+                                          done.trySetException(e);
+                                          abandoned.trySet(null);
+                                      }
+                                  }));
+            var total     = new long[]{0};
+            var finished  = new int[]{0};
+            var promises  = calculateBatch(chunks, isAnalytical(req), abandoned, 1); // -> A frame is answered when all its ranges are done
+            for (int i = 0; i < chunks.size(); i++) {
+                var chunk = chunks.get(i);
+                Promises.timeout(Duration.ofMillis(timeoutMs), promises.get(i))
+                        .whenComplete((res, e) -> {
+                            var partial = e == null ? String.valueOf(res) : "ERROR";
+                            if (e == null) total[0] += res;
+                            buffer.put(wrapUtf8(String.format("chunk %d-%d=%s total=%d%n", chunk.from, chunk.to, partial, total[0])));
+
+                            if (++finished[0] == chunks.size()) {
+                                var duration = System.currentTimeMillis() - start;
+                                buffer.put(wrapUtf8(String.format("done total=%d in %dms%n", total[0], duration)));
+                                buffer.put(null); // -> End of stream
+                            }
+                        });
+            }
+
+            return Promise.of(
+                HttpResponse.ok200()
+                            .withHeader(HttpHeaders.CONTENT_TYPE, "text/plain; charset=utf-8")
+                            .withBodyStream(body)
+                            .build()
             );
+        };
 
-            var sender = this.seedNodeManager.getSender(ServiceType.WORKER);
-            var start  = System.currentTimeMillis();
-            return sender.sendRequest(calcRequest)
-                         .cast(Integer.class)
-                         .map(res -> {
-                             var end      = System.currentTimeMillis();
-                             var duration = end - start;
-                             var msg      = String.format("Value = %d in %dms", res, duration);
-
-                             return HttpResponse.ok200().withPlainText(msg).build();
-                         });
+        AsyncServlet primeCountHandler = req -> {
+            var range     = parseRange(req.getQueryParameter("range"));
+            var timeoutMs = parseTimeout(req);
+            var start     = System.currentTimeMillis();
+            var deadline  = start + timeoutMs;
+            var input     = new PrimeCountRequest(range[0], range[1], deadline);
+
+            var job = WorkerService.JOBS.get(PrimeCountRequest.class, PrimeCount.class);
+            return Promises.timeout(Duration.ofMillis(timeoutMs), runJob(job, input))
+                           .map((res, e) -> {
+                               var end      = System.currentTimeMillis();
+                               var duration = end - start;
+                               if (e != null) {
+                                   if (end < deadline) throw e;
+                                   var msg = String.format("Timeout after %dms", duration);
+                                   return HttpResponse.ofCode(504).withPlainText(msg).build();
+                               }
+
+                               var msg = String.format("Primes = %d in %dms", res.count, duration);
+                               return HttpResponse.ok200().withPlainText(msg).build();
+                           });
         };
 
         var servlet = RoutingServlet.builder(eventloop)
-                                    .with(GET, "/test-log", logHandler)
-                                    .with(GET, "/test-worker", calcHandler)
+                                    .with(GET, "/test-log", admit("test-log", AdaptiveLimiter.Mode.VEGAS, $ -> {}, logHandler))
+                                    .with(GET, "/test-worker", admit("test-worker", AdaptiveLimiter.Mode.AIMD, calcValidator, calcHandler))
+                                    .with(POST, "/test-worker/batch", admit("test-worker-batch", AdaptiveLimiter.Mode.AIMD, calcBatchValidator, calcBatchHandler))
+                                    .with(GET, "/test-worker/stream", admitStreaming("test-worker-stream", calcStreamValidator, calcStreamHandler))
+                                    .with(GET, "/test-job/primes", admit("test-job-primes", AdaptiveLimiter.Mode.AIMD, calcValidator, primeCountHandler))
                                     .build();
         var server = HttpServer.builder(eventloop, servlet)
                                .withListenPort(webPort)
@@ -103,6 +261,221 @@ public class MasterService extends AbstractClusterService {
         logger.info(">> Web-server stated at port: {}", webPort);
     }
 
+    /**
+     * Adaptive in-flight limit per endpoint, its upper bound is -Dmaster.max-in-flight.<endpoint>.
+     * Calculations cost from ~1ms (cache hit, analytical) to seconds, so their latency says nothing about queueing:
+     * they use AIMD which only backs off on errors and timeouts
+     */
+    private AsyncServlet admit(String endpoint, AdaptiveLimiter.Mode mode, AdmissionServlet.Validator validator, AsyncServlet servlet) {
+        return AdmissionServlet.wrap(makeLimiter(endpoint, mode), RETRY_AFTER_SECONDS, validator, servlet);
+    }
+
+    /* Same, but a request counts until its body stream ends */
+    private AsyncServlet admitStreaming(String endpoint, AdmissionServlet.Validator validator, AdmissionServlet.StreamingServlet servlet) {
+        return AdmissionServlet.wrapStreaming(makeLimiter(endpoint, AdaptiveLimiter.Mode.AIMD), RETRY_AFTER_SECONDS, validator, servlet);
+    }
+
+    private static AdaptiveLimiter makeLimiter(String endpoint, AdaptiveLimiter.Mode mode) {
+        var maxInFlight = Integer.getInteger("master.max-in-flight." + endpoint, DEFAULT_MAX_IN_FLIGHT);
+        return new AdaptiveLimiter(mode, Math.max(1, maxInFlight / 4), 1, maxInFlight);
+    }
+
+    /* "from-to", e.g. "1-100" */
+    private static int[] parseRange(String range) {
+        var values = range == null ? new String[0] : range.split("-");
+        if (values.length != 2) throw new IllegalArgumentException("range must be 'from-to', got " + range);
+        return new int[]{Integer.parseInt(values[0].trim()), Integer.parseInt(values[1].trim())};
+    }
+
+    /* Milliseconds a request may take, 'timeout' query param or CALC_TIMEOUT_MS */
+    private static long parseTimeout(HttpRequest req) {
+        var timeoutMs = Optional.ofNullable(req.getQueryParameter("timeout"))
+                                .map(Long::parseLong)
+                                .orElse(CALC_TIMEOUT_MS);
+        if (timeoutMs <= 0) throw new IllegalArgumentException("timeout must be positive, got " + timeoutMs);
+        return timeoutMs;
+    }
+
+    private static Optional<Integer> parseChunks(HttpRequest req) {
+        var chunks = Optional.ofNullable(req.getQueryParameter("chunks")).map(Integer::parseInt);
+        if (chunks.isPresent() && chunks.get() <= 0) throw new IllegalArgumentException("chunks must be positive, got " + chunks.get());
+        return chunks;
+    }
+
+    private boolean isAnalytical(HttpRequest req) {
+        return "analytical".equals(Optional.ofNullable(req.getQueryParameter("mode")).orElse(CALC_MODE));
+    }
+
+    /* Concurrent requests of the same range share one calculation in cluster */
+    private Promise<Long> calculate(CalcRequest calcRequest, boolean analytical) {
+        return calculateBatch(List.of(calcRequest), analytical).get(0);
+    }
+
+    /* ActiveJ does not tell a servlet that its client is gone unless the response is a stream, such callers wait until deadline */
+    private List<Promise<Long>> calculateBatch(List<CalcRequest> requests, boolean analytical) {
+        return calculateBatch(requests, analytical, new SettablePromise<>(), MAX_BATCH_RANGES);
+    }
+
+    /* Sum of a range is a pure arithmetic series, so the analytical mode needs no worker at all */
+    private List<Promise<Long>> calculateBatch(List<CalcRequest> requests, boolean analytical, Promise<Void> abandoned, int rangesPerFrame) {
+        if (!analytical) return calculateInCluster(requests, abandoned, rangesPerFrame);
+
+        return requests.stream()
+                       .map(calcRequest -> Promise.of(MyUtils.sumOfSeries(calcRequest.from, calcRequest.to)))
+                       .toList();
+    }
+
+    /**
+     * Ranges which are not in-flight are sent together, one CalcBatchRequest per worker and rangesPerFrame ranges,
+     * a single range is sent as a plain CalcRequest so it is answered on its own.
+     * A caller who joins a calculation waits for it until abandoned completes, a calculation without waiters is dropped
+     */
+    private List<Promise<Long>> calculateInCluster(List<CalcRequest> requests, Promise<Void> abandoned, int rangesPerFrame) {
+        var promises = new ArrayList<Promise<Long>>(requests.size());
+        var toSend   = new ArrayList<InFlightCalc>();
+
+        for (var calcRequest : requests) {
+            var key  = new RangeKey(calcRequest.from, calcRequest.to);
+            var calc = this.inFlightCalcs.get(key);
+            if (calc != null) {
+                calc.waiters++;
+                promises.add(join(calc, calcRequest, abandoned));
+            } else {
+                calc = startCalc(key, calcRequest);
+                toSend.add(calc);
+                promises.add(calc.promise);
+            }
+
+            var joined = calc;
+            abandoned.whenResult(() -> leave(joined));
+        }
+        if (toSend.isEmpty()) return promises;
+
+        List<SeedNode> nodes;
+        try {
+            nodes = this.seedNodeManager.route(ServiceType.WORKER, toSend.size());
+        } catch (RuntimeException e) {
+            toSend.forEach(calc -> calc.promise.setException(e)); // -> Also clears them from inFlightCalcs
+            return promises;
+        }
+
+        var groups = new LinkedHashMap<SeedNode, List<InFlightCalc>>();
+        for (int i = 0; i < toSend.size(); i++) {
+            var calc = toSend.get(i);
+            var node = nodes.get(i);
+            this.flowCalcs.get(calc.request.flowId).nodes.add(node);
+            groups.computeIfAbsent(node, $ -> new ArrayList<>()).add(calc);
+        }
+
+        groups.forEach((node, calcs) -> {
+            for (int from = 0; from < calcs.size(); from += rangesPerFrame) {
+                var chunk = calcs.subList(from, Math.min(calcs.size(), from + rangesPerFrame));
+                if (chunk.size() == 1) {
+                    var calc = chunk.get(0);
+                    this.seedNodeManager.sendRequest(node, calc.request)
+                                        .cast(Long.class)
+                                        .whenComplete((res, e) -> {
+                                            if (e == null) calc.promise.trySet(res);
+                                            else calc.promise.trySetException(e);
+                                        });
+                    continue;
+                }
+
+                var batch = new CalcBatchRequest(chunk.stream().map(calc -> calc.request).toList());
+                this.seedNodeManager.sendRequest(node, batch)
+                                    .cast(CalcBatchResult.class)
+                                    .whenComplete((res, e) -> {
+                                        for (int k = 0; k < chunk.size(); k++) {
+                                            var calc = chunk.get(k);
+                                            if (e != null) {
+                                                calc.promise.trySetException(e);
+                                            } else if (res.failed[k]) {
+                                                calc.promise.trySetException(new RuntimeException("Worker failed to calculate " + calc.request));
+                                            } else {
+                                                calc.promise.trySet(res.values[k]);
+                                            }
+                                        }
+                                    });
+            }
+        });
+
+        return promises;
+    }
+
+    private InFlightCalc startCalc(RangeKey key, CalcRequest calcRequest) {
+        var calc = new InFlightCalc(calcRequest);
+        this.inFlightCalcs.put(key, calc);
+        this.flowCalcs.computeIfAbsent(calcRequest.flowId, $ -> new FlowCalcs()).live++;
+        calc.promise.whenComplete(() -> {
+            this.inFlightCalcs.remove(key, calc);
+            onCalcEnd(calc);
+        });
+        return calc;
+    }
+
+    /* A shared calculation fails at its first caller's deadline, so a joiner with more time calculates again then */
+    private Promise<Long> join(InFlightCalc calc, CalcRequest calcRequest, Promise<Void> abandoned) {
+        var first       = calc.request.deadline;
+        var hasMoreTime = first > 0 && (calcRequest.deadline <= 0 || calcRequest.deadline > first);
+        if (!hasMoreTime) return calc.promise;
+
+        return calc.promise.then((res, e) -> {
+            if (e == null) return Promise.of(res);
+            if (calcRequest.isExpired() || abandoned.isComplete()) return Promise.ofException(e);
+
+            logger.info(">> Shared calculation of {} failed before its deadline, calculate it again", calcRequest);
+            return calculateInCluster(List.of(calcRequest), abandoned, 1).get(0);
+        });
+    }
+
+    private void leave(InFlightCalc calc) {
+        if (calc.promise.isComplete() || --calc.waiters > 0) return;
+
+        calc.abandoned = true;
+        calc.promise.setException(new CancellationException("Nobody waits for " + calc.request));
+    }
+
+    /* Workers are told to stop a flow once none of its calculations has a waiter, so a shared one is never cut off */
+    private void onCalcEnd(InFlightCalc calc) {
+        var flowId = calc.request.flowId;
+        var flow   = this.flowCalcs.get(flowId);
+        flow.abandoned |= calc.abandoned;
+        if (--flow.live > 0) return;
+
+        this.flowCalcs.remove(flowId);
+        if (!flow.abandoned) return;
+
+        logger.info(">> Flow {} is abandoned by its callers, cancel it on {} workers", flowId, flow.nodes.size());
+        flow.nodes.forEach(node -> this.seedNodeManager.sendRequest(node, new CalcCancel(flowId)));
+    }
+
+    /* Any WORKER node can take a job, it splits the job over the cluster and combines the partials */
+    private <I, P> Promise<P> runJob(JobType<I, ?, P> job, I input) {
+        return this.seedNodeManager.sendRequest(ServiceType.WORKER, input)
+                                   .cast(job.partialType());
+    }
+
+    private record RangeKey(int from, int to) {}
+
+    private static class InFlightCalc {
+        final CalcRequest           request;
+        final SettablePromise<Long> promise;
+        int                         waiters;
+        boolean                     abandoned;
+
+        InFlightCalc(CalcRequest request) {
+            this.request = request;
+            this.promise = new SettablePromise<>();
+            this.waiters = 1;
+        }
+    }
+
+    private static class FlowCalcs {
+        final Set<SeedNode> nodes = new HashSet<>();
+        int                 live;
+        boolean             abandoned;
+    }
+
     public static void main(String[] args) throws IOException {
         var eventloop     = Eventloop.create();
         var discoveryAddr = new InetSocketAddress("localhost", 9000);
@@ -0,0 +1,76 @@
+package com.uet.microservices.services.worker;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decide when a straggling batch gets a duplicate on another node.
+ * Latency is tracked per size bucket (power of two of elements); a batch is hedged once it runs past
+ * the percentile of its bucket, and hedges may not exceed budgetPercent of the batches sent.
+ * Only touched from the eventloop thread.
+ */
+public class HedgingPolicy {
+    private static final int    WINDOW      = 128; // -> Recent samples kept per bucket
+    private static final int    MIN_SAMPLES = 16;
+    private static final double MAX_TOKENS  = 10;
+
+    private final double                percentile;
+    private final double                budgetPercent;
+    private final Map<Integer, Samples> buckets;
+    private       double                tokens;
+
+    public HedgingPolicy(double percentile, double budgetPercent) {
+        this.percentile    = percentile;
+        this.budgetPercent = budgetPercent;
+        this.buckets       = new HashMap<>();
+    }
+
+    public boolean isEnabled() {
+        return budgetPercent > 0;
+    }
+
+    /* Every primary batch earns a part of a hedge */
+    public void onSent() {
+        this.tokens = Math.min(MAX_TOKENS, this.tokens + budgetPercent / 100);
+    }
+
+    public void record(long elements, long durationMs) {
+        this.buckets.computeIfAbsent(bucketOf(elements), $ -> new Samples()).add(durationMs);
+    }
+
+    /* Delay after which a batch of this size is a straggler, or -1 if we don't know enough yet */
+    public long hedgeDelayMs(long elements) {
+        var samples = this.buckets.get(bucketOf(elements));
+        if (samples == null || samples.count < MIN_SAMPLES) return -1;
+        return samples.percentile(percentile);
+    }
+
+    public boolean tryHedge() {
+        if (this.tokens < 1) return false;
+        this.tokens--;
+        return true;
+    }
+
+    private static int bucketOf(long elements) {
+        return 64 - Long.numberOfLeadingZeros(Math.max(1, elements));
+    }
+
+    private static class Samples {
+        final long[] values = new long[WINDOW];
+        int          count;
+        int          next;
+
+        void add(long value) {
+            values[next] = value;
+            next         = (next + 1) % WINDOW;
+            count        = Math.min(WINDOW, count + 1);
+        }
+
+        long percentile(double p) {
+            var sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.min(count - 1, Math.ceil(p / 100 * count) - 1)];
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.uet.microservices.services.worker;
+
+import java.util.*;
+
+/**
+ * Bounded LRU cache of calculated sub-ranges. Cached ranges never overlap, so a request can be
+ * decomposed into cached segments plus the gaps between them, and only the gaps are calculated.
+ * Only touched from the eventloop thread.
+ */
+public class RangeCache {
+    public record Range(int from, int to) {}
+
+    public record Lookup(long cachedSum, List<Range> gaps) {}
+
+    private final TreeMap<Integer, Range>    byFrom;
+    private final LinkedHashMap<Range, Long> values;
+
+    public RangeCache(int capacity) {
+        this.byFrom = new TreeMap<>();
+        this.values = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Range, Long> eldest) {
+                if (size() <= capacity) return false;
+                byFrom.remove(eldest.getKey().from());
+                return true;
+            }
+        };
+    }
+
+    public void put(int from, int to, long value) {
+        // -> Keep ranges disjoint: skip a range which overlaps any cached one
+        var floor = this.byFrom.floorEntry(to);
+        if (floor != null && floor.getValue().to() >= from) return;
+
+        var range = new Range(from, to);
+        this.byFrom.put(from, range);
+        this.values.put(range, value);
+    }
+
+    /* Cached ranges fully inside [from, to] are used, everything else is a gap */
+    public Lookup decompose(int from, int to) {
+        var sum  = 0L;
+        var gaps = new ArrayList<Range>();
+        var cur  = from;
+
+        for (var range : this.byFrom.subMap(from, true, to, true).values()) {
+            if (range.to() > to) break;
+            if (range.from() > cur) gaps.add(new Range(cur, range.from() - 1));
+
+            sum += this.values.get(range); // -> Also marks the range as recently used
+            cur = range.to() + 1;
+        }
+        if (cur <= to) gaps.add(new Range(cur, to));
+
+        return new Lookup(sum, gaps);
+    }
+
+    public int size() {
+        return values.size();
+    }
+}
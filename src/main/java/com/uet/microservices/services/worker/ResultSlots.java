@@ -0,0 +1,150 @@
+package com.uet.microservices.services.worker;
+
+import com.uet.microservices.lib.model.NodeAddr;
+import com.uet.microservices.lib.model.SeedNode;
+import io.activej.promise.SettablePromise;
+
+import java.util.*;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * One result slot per sub-task of a request. A slot is written once, so a late or duplicated answer
+ * of a retried task never counts twice.
+ * - T: a sub-task, e.g. a WorkerTask or a partition of a job
+ * - V: result of a sub-task, the request's result combines all of them
+ * Only touched from the eventloop thread.
+ */
+public class ResultSlots<T, V> {
+    public final List<T>            tasks;
+    public final SettablePromise<V> result;
+
+    private final long                deadline; // -> Epoch millis, 0 is no deadline
+    private final V                   zero;
+    private final BinaryOperator<V>   combine;
+    private final Object[]            values;
+    private final boolean[]           filled;
+    private final int[]               attempts;
+    private final Set<NodeAddr>[]     failedOn;
+    private final Map<Long, SeedNode> outstanding; // -> Batches which are still running, by batch id
+    private       int                 remaining;
+
+    @SuppressWarnings("unchecked")
+    public ResultSlots(List<T> tasks, long deadline, V zero, BinaryOperator<V> combine) {
+        this.tasks       = tasks;
+        this.result      = new SettablePromise<>();
+        this.deadline    = deadline;
+        this.zero        = zero;
+        this.combine     = combine;
+        this.values      = new Object[tasks.size()];
+        this.filled      = new boolean[tasks.size()];
+        this.attempts    = new int[tasks.size()];
+        this.failedOn    = new Set[tasks.size()];
+        this.outstanding = new HashMap<>();
+        this.remaining   = tasks.size();
+
+        if (tasks.isEmpty()) result.set(zero);
+    }
+
+    /* Sums of WorkerTasks */
+    public static ResultSlots<WorkerTask, Long> ofSums(List<WorkerTask> tasks, long deadline) {
+        return new ResultSlots<>(tasks, deadline, 0L, Long::sum);
+    }
+
+    public boolean isFilled(int index) {
+        return filled[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    public void fill(int index, V value) {
+        if (filled[index] || result.isComplete()) return;
+
+        filled[index] = true;
+        values[index] = value;
+        if (--remaining == 0) {
+            var total = zero;
+            for (var v : values) total = combine.apply(total, (V) v);
+            result.set(total);
+        }
+    }
+
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public boolean isExpired() {
+        return deadline > 0 && System.currentTimeMillis() > deadline;
+    }
+
+    /* Count a new attempt of a task, return the number of attempts so far */
+    public int startAttempt(int index) {
+        return ++attempts[index];
+    }
+
+    public void markFailed(int index, NodeAddr addr) {
+        if (failedOn[index] == null) failedOn[index] = new HashSet<>();
+        failedOn[index].add(addr);
+    }
+
+    public boolean hasFailedOn(int index, NodeAddr addr) {
+        return failedOn[index] != null && failedOn[index].contains(addr);
+    }
+
+    /**
+     * Group unfilled tasks of a failed batch by the node they are sent to next, each task is routed away from
+     * the nodes it failed on. Fails the request instead when a task is expired, out of attempts or out of nodes.
+     * Nothing is sent again once the request is settled, e.g. failed by a cancel or another task.
+     */
+    public Map<SeedNode, List<Integer>> planRetry(
+        List<Integer> indexes,
+        SeedNode failedNode,
+        Exception e,
+        int maxAttempts,
+        Function<Predicate<SeedNode>, SeedNode> route
+    ) {
+        var groups = new LinkedHashMap<SeedNode, List<Integer>>();
+        if (result.isComplete()) return groups;
+
+        for (var i : indexes) {
+            if (filled[i]) continue;
+            if (isExpired()) {
+                fail(new TimeoutException("Deadline is exceeded"));
+                return Map.of();
+            }
+
+            markFailed(i, failedNode.nodeAddr);
+            if (startAttempt(i) > maxAttempts) {
+                fail(e);
+                return Map.of();
+            }
+
+            try {
+                var node = route.apply(n -> !hasFailedOn(i, n.nodeAddr));
+                groups.computeIfAbsent(node, $ -> new ArrayList<>()).add(i);
+            } catch (RuntimeException ex) {
+                fail(e); // -> No live worker left which has not failed this task
+                return Map.of();
+            }
+        }
+        return groups;
+    }
+
+    public void onBatchStart(long batchId, SeedNode node) {
+        outstanding.put(batchId, node);
+    }
+
+    public void onBatchEnd(long batchId) {
+        outstanding.remove(batchId);
+    }
+
+    /* Batches still running when the request was abandoned, so they can be cancelled */
+    public Map<Long, SeedNode> getOutstanding() {
+        return Map.copyOf(outstanding);
+    }
+
+    public void fail(Exception e) {
+        result.trySetException(e);
+    }
+}
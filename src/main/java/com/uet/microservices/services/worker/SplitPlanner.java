@@ -0,0 +1,54 @@
+package com.uet.microservices.services.worker;
+
+/**
+ * Decide how a big range is split into WorkerTasks.
+ * The number of chunks follows the free capacity of the cluster (live workers * threads per worker),
+ * and chunks are never made so small that the RPC round trip costs more than the work itself.
+ */
+public class SplitPlanner {
+    private static final double EWMA_ALPHA        = 0.2;
+    private static final double MIN_CHUNK_COST_MS = 50;  // -> A chunk should run at least this long to be worth a RPC
+    private static final double DEFAULT_ELEMENT_MS = 500; // -> Same as MyUtils.sumOf until we observe real tasks
+
+    private final int threadsPerWorker;
+    private double    elementCostMs;
+
+    public SplitPlanner(int threadsPerWorker) {
+        this.threadsPerWorker = threadsPerWorker;
+        this.elementCostMs    = DEFAULT_ELEMENT_MS;
+    }
+
+    /* Called from executor threads after a range is calculated */
+    public synchronized void recordTask(long elements, long durationNanos) {
+        if (elements <= 0) return;
+
+        var costMs = durationNanos / 1_000_000.0 / elements;
+        this.elementCostMs = EWMA_ALPHA * costMs + (1 - EWMA_ALPHA) * this.elementCostMs;
+    }
+
+    public synchronized double getElementCostMs() {
+        return elementCostMs;
+    }
+
+    /**
+     * Return the step to use with WorkerTask.breakBig
+     *
+     * @param liveWorkers number of WORKER nodes which are UP in cluster
+     * @param queuedTasks number of tasks waiting in the local executor
+     */
+    public int planStep(int from, int to, int liveWorkers, int queuedTasks) {
+        var size = to - from + 1;
+        if (size <= 1) return 0;
+
+        // -> Local backlog means local threads are busy, but never plan less than one chunk per worker
+        var workers = Math.max(1, liveWorkers);
+        var slots   = Math.max(workers, workers * threadsPerWorker - queuedTasks);
+        var chunks  = Math.min(size, slots);
+
+        var minElements = (int) Math.ceil(MIN_CHUNK_COST_MS / Math.max(getElementCostMs(), 0.001));
+        chunks = Math.max(1, Math.min(chunks, size / Math.max(1, minElements)));
+
+        var elementsPerChunk = (size + chunks - 1) / chunks;
+        return elementsPerChunk - 1; // -> breakBig's step is inclusive: [cur, cur + step]
+    }
+}
@@ -0,0 +1,21 @@
+package com.uet.microservices.services.worker;
+
+import com.uet.microservices.lib.model.NodeAddr;
+import io.activej.serializer.annotations.Deserialize;
+import io.activej.serializer.annotations.Serialize;
+
+/* Invite an idle worker to pull tasks of a job from the origin node until nothing is left */
+public class StealJob {
+    public @Serialize(order = 0) long     jobId;
+    public @Serialize(order = 1) NodeAddr origin;
+
+    public StealJob(@Deserialize("jobId") long jobId, @Deserialize("origin") NodeAddr origin) {
+        this.jobId  = jobId;
+        this.origin = origin;
+    }
+
+    @Override
+    public String toString() {
+        return "StealJob(" + jobId + ", " + origin + ")";
+    }
+}
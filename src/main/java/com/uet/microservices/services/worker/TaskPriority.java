@@ -0,0 +1,17 @@
+package com.uet.microservices.services.worker;
+
+/**
+ * Scheduling class of a request, decided once by its originator and kept by all of its sub-requests and tasks,
+ * so a small piece of a huge range is still BULK.
+ */
+public enum TaskPriority {
+    INTERACTIVE,
+    BULK;
+
+    // -> Requests up to this many elements are answered before bulk work (-Dcalc.interactive-max-elements)
+    private static final int INTERACTIVE_MAX_ELEMENTS = Integer.getInteger("calc.interactive-max-elements", 10);
+
+    public static TaskPriority of(long elements) {
+        return elements <= INTERACTIVE_MAX_ELEMENTS ? INTERACTIVE : BULK;
+    }
+}
@@ -0,0 +1,35 @@
+package com.uet.microservices.services.worker;
+
+import com.uet.microservices.lib.model.NodeAddr;
+import io.activej.serializer.annotations.Deserialize;
+import io.activej.serializer.annotations.Serialize;
+
+import java.util.List;
+
+/* Ask the origin for more tasks of a job, carrying results of the tasks taken by the previous pull */
+public class TaskPull {
+    public @Serialize(order = 0) long             jobId;
+    public @Serialize(order = 1) NodeAddr         taker;
+    public @Serialize(order = 2) int              maxTasks;
+    public @Serialize(order = 3) List<WorkerTask> done;
+    public @Serialize(order = 4) long[]           results;
+
+    public TaskPull(
+        @Deserialize("jobId") long jobId,
+        @Deserialize("taker") NodeAddr taker,
+        @Deserialize("maxTasks") int maxTasks,
+        @Deserialize("done") List<WorkerTask> done,
+        @Deserialize("results") long[] results
+    ) {
+        this.jobId    = jobId;
+        this.taker    = taker;
+        this.maxTasks = maxTasks;
+        this.done     = done;
+        this.results  = results;
+    }
+
+    @Override
+    public String toString() {
+        return "TaskPull(" + jobId + ", " + taker + ", " + maxTasks + ", done=" + done.size() + ")";
+    }
+}
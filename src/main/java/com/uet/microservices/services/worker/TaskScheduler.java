@@ -0,0 +1,166 @@
+package com.uet.microservices.services.worker;
+
+import com.uet.microservices.lib.service.execution.ExecutionPool;
+import io.activej.common.function.SupplierEx;
+import io.activej.promise.Promise;
+import io.activej.promise.SettablePromise;
+
+import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Decide which waiting task gets the next free thread of an ExecutionPool, instead of the FIFO queue of the pool.
+ * - INTERACTIVE tasks start before BULK ones, so small queries stay fast while a bulk job saturates the node
+ * - Inside a class, requests (flows) share the threads by fair queuing: each task gets a virtual finish time
+ *   which grows with its elements, so a request with many or big tasks cannot starve the others
+ * - Aging: a BULK task which waited longer than agingMs starts before INTERACTIVE ones, so bulk work always moves
+ * - The pool never queues, so the waiting tasks here are bounded by the queue capacity of the pool instead
+ * Only touched from the eventloop thread.
+ */
+public class TaskScheduler {
+    private final ExecutionPool                    pool;
+    private final long                             agingMs;
+    private final EnumMap<TaskPriority, FairQueue> queues;
+    private final ArrayDeque<Entry>                bulkArrivals; // -> BULK tasks in arrival order, for aging
+    private       long                             lastSeq;
+    private       int                              waiting;
+    private       int                              running;
+    private       long                             rejected;
+
+    public TaskScheduler(ExecutionPool pool, long agingMs) {
+        this.pool         = pool;
+        this.agingMs      = agingMs;
+        this.queues       = new EnumMap<>(TaskPriority.class);
+        this.bulkArrivals = new ArrayDeque<>();
+        for (var priority : TaskPriority.values()) queues.put(priority, new FairQueue());
+    }
+
+    public <T> Promise<T> submit(long flowId, TaskPriority priority, long cost, SupplierEx<T> supplier) {
+        if (waiting >= pool.getQueueCapacity()) {
+            rejected++;
+            return Promise.ofException(new RejectedExecutionException("Scheduler of " + pool + " is full, waiting=" + waiting));
+        }
+
+        var result = new SettablePromise<T>();
+        var entry  = new Entry(
+            flowId,
+            Math.max(1, cost),
+            ++lastSeq,
+            System.currentTimeMillis(),
+            () -> pool.submit(supplier)
+                      .whenComplete((res, e) -> {
+                          running--;
+                          if (e == null) result.set(res);
+                          else result.setException(e);
+                          drain();
+                      })
+        );
+
+        queues.get(priority).add(entry);
+        if (priority == TaskPriority.BULK) bulkArrivals.add(entry);
+        waiting++;
+        drain();
+        return result;
+    }
+
+    /* Tasks waiting for a thread */
+    public int getQueueDepth() {
+        return waiting;
+    }
+
+    public long getRejectedCount() {
+        return rejected;
+    }
+
+    /* Tasks which would start right now without waiting */
+    public int getIdle() {
+        return Math.max(0, pool.getConcurrency() - running - waiting);
+    }
+
+    private void drain() {
+        while (waiting > 0 && running < pool.getConcurrency()) {
+            var entry = next();
+            waiting--;
+            running++;
+            entry.start.run();
+        }
+    }
+
+    private Entry next() {
+        // -> Skip BULK tasks which were already started through their fair queue
+        while (!bulkArrivals.isEmpty() && bulkArrivals.peekFirst().started) bulkArrivals.pollFirst();
+
+        var oldest = bulkArrivals.peekFirst();
+        if (oldest != null && System.currentTimeMillis() - oldest.enqueuedAt >= agingMs) {
+            bulkArrivals.pollFirst();
+            queues.get(TaskPriority.BULK).remove(oldest);
+            return oldest;
+        }
+
+        var interactive = queues.get(TaskPriority.INTERACTIVE);
+        return interactive.isEmpty() ? queues.get(TaskPriority.BULK).poll() : interactive.poll();
+    }
+
+    private static class Entry {
+        final long     flowId;
+        final long     cost;
+        final long     seq;
+        final long     enqueuedAt;
+        final Runnable start;
+        double         startTag;
+        double         finishTag;
+        boolean        started;
+
+        Entry(long flowId, long cost, long seq, long enqueuedAt, Runnable start) {
+            this.flowId     = flowId;
+            this.cost       = cost;
+            this.seq        = seq;
+            this.enqueuedAt = enqueuedAt;
+            this.start      = start;
+        }
+    }
+
+    /* Start-time fair queuing: virtual time is the start tag of the last started task */
+    private static class FairQueue {
+        private final PriorityQueue<Entry> heap =
+            new PriorityQueue<>(Comparator.<Entry>comparingDouble(e -> e.finishTag).thenComparingLong(e -> e.seq));
+        private final Map<Long, double[]>  lastFinish = new HashMap<>(); // -> Finish tag of the last queued task of a flow
+        private final Map<Long, Integer>   queued     = new HashMap<>();
+        private       double               virtualTime;
+
+        void add(Entry entry) {
+            var last = lastFinish.computeIfAbsent(entry.flowId, $ -> new double[1]);
+            entry.startTag  = Math.max(virtualTime, last[0]);
+            entry.finishTag = entry.startTag + entry.cost;
+            last[0]         = entry.finishTag;
+            queued.merge(entry.flowId, 1, Integer::sum);
+            heap.add(entry);
+        }
+
+        boolean isEmpty() {
+            return heap.isEmpty();
+        }
+
+        Entry poll() {
+            var entry = heap.poll();
+            onStart(entry);
+            return entry;
+        }
+
+        void remove(Entry entry) {
+            heap.remove(entry);
+            onStart(entry);
+        }
+
+        private void onStart(Entry entry) {
+            entry.started = true;
+            virtualTime   = Math.max(virtualTime, entry.startTag);
+
+            // -> A flow without queued tasks is forgotten, it starts again from the virtual time
+            if (queued.merge(entry.flowId, -1, Integer::sum) == 0) {
+                queued.remove(entry.flowId);
+                lastFinish.remove(entry.flowId);
+            }
+        }
+    }
+}
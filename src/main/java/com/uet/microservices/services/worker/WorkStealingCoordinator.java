@@ -0,0 +1,88 @@
+package com.uet.microservices.services.worker;
+
+import com.uet.microservices.lib.model.NodeAddr;
+import io.activej.promise.SettablePromise;
+
+import java.util.*;
+
+/**
+ * Pending tasks of the jobs split by this node. Workers take tasks when they are free instead of
+ * receiving a fixed share, so fast workers simply take more.
+ * Only touched from the eventloop thread.
+ */
+public class WorkStealingCoordinator {
+    private final Map<Long, Job> jobs = new HashMap<>();
+
+    /* jobId must be unique in this node, it is sent back by the takers */
+    public Job submit(long jobId, List<WorkerTask> tasks) {
+        var job = new Job(jobId, tasks);
+        if (tasks.isEmpty()) job.result.set(0L);
+        else this.jobs.put(job.id, job);
+        return job;
+    }
+
+    public List<WorkerTask> take(long jobId, NodeAddr taker, int max) {
+        var job = this.jobs.get(jobId);
+        if (job == null) return List.of();
+
+        var tasks = new ArrayList<WorkerTask>();
+        while (tasks.size() < max && !job.pending.isEmpty()) {
+            tasks.add(job.pending.pollFirst());
+        }
+        job.taken.computeIfAbsent(taker, $ -> new ArrayList<>()).addAll(tasks);
+        return tasks;
+    }
+
+    public void complete(long jobId, NodeAddr taker, List<WorkerTask> done, long[] results) {
+        var job = this.jobs.get(jobId);
+        if (job == null || done.isEmpty()) return;
+
+        var taken = job.taken.getOrDefault(taker, new ArrayList<>());
+        for (int i = 0; i < done.size(); i++) {
+            var task = done.get(i);
+            // -> Ignore results of tasks which were already given back to the queue
+            if (taken.removeIf(t -> t.from == task.from && t.to == task.to)) {
+                job.sum += results[i];
+                job.remaining--;
+            }
+        }
+
+        if (job.remaining == 0) {
+            this.jobs.remove(jobId);
+            job.result.set(job.sum);
+        }
+    }
+
+    /* Give back all tasks held by a taker, e.g. when it went down. Return true if job is still running */
+    public boolean requeue(long jobId, NodeAddr taker) {
+        var job = this.jobs.get(jobId);
+        if (job == null) return false;
+
+        Optional.ofNullable(job.taken.remove(taker))
+                .ifPresent(tasks -> tasks.forEach(job.pending::addFirst));
+        return true;
+    }
+
+    public void fail(long jobId, Exception e) {
+        Optional.ofNullable(this.jobs.remove(jobId))
+                .ifPresent(job -> job.result.setException(e));
+    }
+
+    public static class Job {
+        public final long                  id;
+        public final SettablePromise<Long> result;
+
+        private final Deque<WorkerTask>                pending;
+        private final Map<NodeAddr, List<WorkerTask>> taken;
+        private       int                             remaining;
+        private       long                            sum;
+
+        private Job(long id, List<WorkerTask> tasks) {
+            this.id        = id;
+            this.result    = new SettablePromise<>();
+            this.pending   = new ArrayDeque<>(tasks);
+            this.taken     = new HashMap<>();
+            this.remaining = tasks.size();
+        }
+    }
+}
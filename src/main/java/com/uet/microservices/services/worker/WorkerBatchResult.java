@@ -0,0 +1,28 @@
+package com.uet.microservices.services.worker;
+
+import com.uet.microservices.lib.model.NodeLoad;
+import com.uet.microservices.lib.protocol.RpcWithNodeLoad;
+import io.activej.serializer.annotations.Deserialize;
+import io.activej.serializer.annotations.Serialize;
+
+import java.util.Arrays;
+
+public class WorkerBatchResult implements RpcWithNodeLoad {
+    public @Serialize(order = 0) long[]   values;
+    public @Serialize(order = 1) NodeLoad nodeLoad;
+
+    public WorkerBatchResult(@Deserialize("values") long[] values, @Deserialize("nodeLoad") NodeLoad nodeLoad) {
+        this.values   = values;
+        this.nodeLoad = nodeLoad;
+    }
+
+    @Override
+    public NodeLoad getNodeLoad() {
+        return nodeLoad;
+    }
+
+    @Override
+    public String toString() {
+        return "WorkerBatchResult(" + Arrays.toString(values) + ", " + nodeLoad + ")";
+    }
+}
@@ -1,9 +1,21 @@
 package com.uet.microservices.services.worker;
 
+import com.uet.microservices.lib.model.NodeLoad;
 import com.uet.microservices.lib.model.NodeType;
+import com.uet.microservices.lib.model.SeedNode;
+import com.uet.microservices.lib.protocol.RpcBasicOperation;
 import com.uet.microservices.lib.service.AbstractClusterService;
+import com.uet.microservices.lib.service.ReactorGroup;
+import com.uet.microservices.lib.service.execution.ExecutionPool;
+import com.uet.microservices.lib.service.routing.RoutingStrategies;
 import com.uet.microservices.services.ServiceType;
+import com.uet.microservices.services.master.CalcBatchRequest;
+import com.uet.microservices.services.master.CalcBatchResult;
+import com.uet.microservices.services.master.CalcCancel;
 import com.uet.microservices.services.master.CalcRequest;
+import com.uet.microservices.services.worker.job.JobRegistry;
+import com.uet.microservices.services.worker.job.JobType;
+import com.uet.microservices.services.worker.job.PrimeCountJob;
 import com.uet.microservices.utils.MyUtils;
 import io.activej.eventloop.Eventloop;
 import io.activej.promise.Promise;
@@ -12,11 +24,70 @@ import io.activej.rpc.server.RpcRequestHandler;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.Executors;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
 
 public class WorkerService extends AbstractClusterService {
+    /* Job types which the cluster can run, their message types are appended to MESSAGE_TYPES */
+    public static final JobRegistry JOBS = JobRegistry.of(
+        new PrimeCountJob()
+    );
+
+    /* Notice: Every client of WORKER nodes must use this list, only append new types at the end */
+    public static final List<Class<?>> MESSAGE_TYPES = JOBS.withMessageTypes(List.of(
+        CalcRequest.class,
+        Integer.class,
+        WorkerTask.class,
+        WorkerTaskBatch.class,
+        WorkerBatchResult.class,
+        StealJob.class,
+        TaskPull.class,
+        WorkerTaskCancel.class,
+        RpcBasicOperation.class,
+        CalcBatchRequest.class,
+        CalcBatchResult.class,
+        Long.class,
+        CalcCancel.class
+    ));
+
+    private static final int SMALL_TASK_ELEMENTS = 4;  // -> Tasks up to this size run on the small pool, not behind big ones
+    private static final int TREE_FANOUT         = 4;  // -> Sub-requests per level when a range is too big for one node
+    private static final int MAX_TREE_DEPTH      = 2;
+    private static final int MAX_LEAF_TASKS      = 16; // -> More tasks than this are fanned out as sub-requests
+
+    // -> Let idle workers pull tasks from the splitting node instead of pushing them (-Dworker.work-stealing=true)
+    private static final boolean WORK_STEALING = Boolean.getBoolean("worker.work-stealing");
+    // -> Attempts of a sub-task, including the first one, before the whole request fails
+    private static final int     MAX_ATTEMPTS  = Integer.getInteger("worker.max-attempts", 3);
+
+    // -> Hedge a batch once it runs past this latency percentile, with hedges capped at a percent of batches
+    private static final double HEDGE_PERCENTILE      = 95;
+    private static final double HEDGE_BUDGET_PERCENT  = Double.parseDouble(System.getProperty("worker.hedge-budget-percent", "5"));
+    private static final long   NO_BATCH              = 0;
+    private static final int    RANGE_CACHE_SIZE      = Integer.getInteger("worker.range-cache-size", 10_000);
+    // -> A BULK task waiting longer than this starts before INTERACTIVE ones (-Dworker.aging-ms)
+    private static final long   AGING_MS              = Long.getLong("worker.aging-ms", 2_000);
+    // -> Tasks of a cancelled flow may still arrive from other nodes for a while, they are dropped until then
+    private static final long   CANCELLED_FLOW_TTL_MS = 60_000;
+
+    private final ExecutionPool             smallPool;
+    private final ExecutionPool             bigPool;
+    private final TaskScheduler             smallScheduler;
+    private final TaskScheduler             bigScheduler;
+    private final SplitPlanner              splitPlanner;
+    private final WorkStealingCoordinator   stealCoordinator;
+    private final HedgingPolicy             hedgingPolicy;
+    private final RangeCache                rangeCache;
+    private final RangeRunner               rangeRunner;
+    private final Set<Long>                 activeBatches;    // -> Batches running on this node, eventloop only
+    private final Set<Long>                 cancelledBatches; // -> Read from executor threads
+    private final Set<Long>                 cancelledFlows;   // -> Read from executor threads
+    private final Map<Long, List<Runnable>> flowCleanups;     // -> What to stop when a flow is cancelled, eventloop only
+
     protected WorkerService(
         Eventloop eventloop,
         InetSocketAddress discoveryAddr,
@@ -25,6 +96,20 @@ public class WorkerService extends AbstractClusterService {
         List<NodeType> seedTypes
     ) {
         super(eventloop, discoveryAddr, serviceName, nodeType, seedTypes);
+        this.smallPool        = ExecutionPool.fromConfig("worker.small-executor", 2, 1000);
+        this.bigPool          = ExecutionPool.fromConfig("worker.big-executor", coresPerReactor(), 1000);
+        this.smallScheduler   = new TaskScheduler(smallPool, AGING_MS);
+        this.bigScheduler     = new TaskScheduler(bigPool, AGING_MS);
+        this.splitPlanner     = new SplitPlanner(bigPool.getConcurrency());
+        this.stealCoordinator = new WorkStealingCoordinator();
+        this.hedgingPolicy    = new HedgingPolicy(HEDGE_PERCENTILE, HEDGE_BUDGET_PERCENT);
+        this.rangeCache       = new RangeCache(RANGE_CACHE_SIZE);
+        this.rangeRunner      = new RangeRunner();
+        this.activeBatches    = new HashSet<>();
+        this.cancelledBatches = ConcurrentHashMap.newKeySet();
+        this.cancelledFlows   = ConcurrentHashMap.newKeySet();
+        this.flowCleanups     = new HashMap<>();
+        this.seedNodeManager.withRouting(ServiceType.WORKER, RoutingStrategies.powerOfTwoChoices());
     }
 
     public static WorkerService create(Eventloop eventloop, InetSocketAddress discoveryAddr) {
@@ -39,56 +124,675 @@ public class WorkerService extends AbstractClusterService {
 
     @Override
     protected Map<Class, RpcRequestHandler> makeRpcRequestHandlers() {
-        var executor = Executors.newFixedThreadPool(2);
-
-        RpcRequestHandler<CalcRequest, Integer> calcRequestHandler =
-            req -> {
-                if (req.to < 4) {
-                    logger.info(">> This is a small task: {}. Calculate it right now", req);
-                    return Promise.ofBlocking(
-                        executor,
-                        () -> MyUtils.sumOf(req.from, req.to)
-                    );
-                } else {
-                    logger.info(">> This is a big task: {}. Split it and send them to cluster", req);
-                    var sender = this.seedNodeManager.getSender(ServiceType.WORKER);
-                    var tasks  = WorkerTask.breakBig(req.from, req.to, 2);
-
-                    var promises = tasks.stream().map(task -> sender.sendRequest(task).cast(Integer.class))
-                                        .toList();
-                    return Promises.toList(promises)
-                                   .map(lst -> lst.stream().mapToInt(v -> v).sum());
-                }
+        RpcRequestHandler<CalcRequest, Long> calcRequestHandler = this::handleCalcRequest;
+
+        // -> Each range is settled on its own, a failed range does not fail the others of the frame
+        RpcRequestHandler<CalcBatchRequest, CalcBatchResult> calcBatchHandler =
+            batch -> {
+                logger.info(">> Received a batch of {} requests", batch.requests.size());
+                var promises = batch.requests.stream()
+                                             .map(req -> handleCalcRequest(req).map((res, e) -> {
+                                                 if (e == null) return res;
+                                                 logger.warn(">> Request {} of batch failed: {}", req, e.getMessage());
+                                                 return null;
+                                             }))
+                                             .toList();
+                return Promises.toList(promises)
+                               .map(this::toBatchResult);
             };
 
-        RpcRequestHandler<WorkerTask, Integer> workerTaskHandler =
+        RpcRequestHandler<WorkerTask, Long> workerTaskHandler =
             task -> {
                 logger.info(">> Received a task: {}", task);
-                return Promise.ofBlocking(
-                    executor,
-                    () -> MyUtils.sumOf(task.from, task.to)
-                );
+                return calculate(task);
+            };
+
+        RpcRequestHandler<WorkerTaskBatch, WorkerBatchResult> workerBatchHandler =
+            batch -> {
+                logger.info(">> Received a batch of {} tasks", batch.tasks.size());
+                activeBatches.add(batch.id);
+                var promises = batch.tasks.stream()
+                                          .map(task -> calculate(task, batch.id))
+                                          .toList();
+                return Promises.toList(promises)
+                               .map(lst -> new WorkerBatchResult(toArray(lst), currentLoad()))
+                               .whenComplete(() -> finishBatch(batch.id));
+            };
+
+        RpcRequestHandler<WorkerTaskCancel, RpcBasicOperation> cancelHandler =
+            cancel -> {
+                cancelLocalBatch(cancel.batchId);
+                return Promise.of(RpcBasicOperation.ACCEPT);
+            };
+
+        RpcRequestHandler<CalcCancel, RpcBasicOperation> calcCancelHandler =
+            cancel -> {
+                cancelFlow(cancel.flowId);
+                return Promise.of(RpcBasicOperation.ACCEPT);
+            };
+
+        RpcRequestHandler<StealJob, Integer> stealJobHandler =
+            job -> {
+                var origin = this.seedNodeManager.getNodes(ServiceType.WORKER)
+                                                 .stream()
+                                                 .filter(node -> node.nodeAddr.equals(job.origin))
+                                                 .findFirst();
+                if (origin.isEmpty()) return Promise.of(0);
+
+                logger.info(">> Start pulling tasks of job {} from {}", job.jobId, job.origin);
+                return pullRemote(origin.get(), job.jobId, List.of(), new long[0], 0);
             };
 
-        return Map.of(
+        // -> The job may be owned by another shard of this node, the connection is not bound to the job
+        RpcRequestHandler<TaskPull, WorkerTaskBatch> taskPullHandler =
+            pull -> onShard(ownerShard(pull.jobId), (WorkerService owner) -> {
+                owner.stealCoordinator.complete(pull.jobId, pull.taker, pull.done, pull.results);
+                return Promise.of(
+                    new WorkerTaskBatch(owner.stealCoordinator.take(pull.jobId, pull.taker, pull.maxTasks))
+                );
+            });
+
+        var handlers = new HashMap<Class, RpcRequestHandler>(Map.of(
             CalcRequest.class, calcRequestHandler,
-            WorkerTask.class, workerTaskHandler
+            WorkerTask.class, workerTaskHandler,
+            WorkerTaskBatch.class, workerBatchHandler,
+            StealJob.class, stealJobHandler,
+            TaskPull.class, taskPullHandler,
+            WorkerTaskCancel.class, cancelHandler,
+            CalcBatchRequest.class, calcBatchHandler,
+            CalcCancel.class, calcCancelHandler
+        ));
+        JOBS.getJobs().forEach(job -> addJobHandlers(handlers, job));
+        return handlers;
+    }
+
+    private <I, S, P> void addJobHandlers(Map<Class, RpcRequestHandler> handlers, JobType<I, S, P> job) {
+        RpcRequestHandler<I, P> inputHandler     = input -> runJob(job, input);
+        RpcRequestHandler<S, P> partitionHandler = partition -> mapPartition(job, partition);
+
+        handlers.put(job.inputType(), inputHandler);
+        handlers.put(job.partitionType(), partitionHandler);
+    }
+
+    /**
+     * Split a job over the live workers and combine partials on this node. Partitions are dispatched like the tasks
+     * of a range: retried on another node, abandoned at the job's deadline, and cancelled with the job's flow.
+     * There is one partition per thread of the cluster, so they are never fanned out as a tree
+     */
+    private <I, S, P> Promise<P> runJob(JobType<I, S, P> job, I input) {
+        logger.info(">> Received a job: {}", input);
+        var parts      = Math.max(1, this.seedNodeManager.countNodes(ServiceType.WORKER)) * bigPool.getConcurrency();
+        var jobId      = nextJobId();
+        var partitions = job.split(input, parts, jobId);
+        var slots      = new ResultSlots<>(partitions, job.deadline(input), job.zero(), job::combine);
+        return dispatch(slots, new JobRunner<>(job, jobId), jobId);
+    }
+
+    /* Unique in cluster: nextShardId is only unique in this node, so the node address is mixed into the high bits */
+    private long nextJobId() {
+        return ((long) selfNode.nodeAddr.hashCode() << 32) | (nextShardId() & 0xFFFFFFFFL);
+    }
+
+    /* Partitions are BULK work, all partitions of a job share one flow, so concurrent jobs share threads fairly */
+    private <I, S, P> Promise<P> mapPartition(JobType<I, S, P> job, S partition) {
+        var jobId = job.jobId(partition);
+        return bigScheduler.submit(
+            jobId,
+            TaskPriority.BULK,
+            1,
+            () -> {
+                if (cancelledFlows.contains(jobId)) {
+                    throw new CancellationException("Job " + jobId + " is cancelled");
+                }
+                return job.map(partition);
+            }
+        );
+    }
+
+    private Promise<Long> handleCalcRequest(CalcRequest req) {
+        if (req.isExpired()) {
+            logger.warn(">> Drop expired request: {}", req);
+            return Promise.ofException(new TimeoutException("Deadline of " + req + " is exceeded"));
+        }
+        if (cancelledFlows.contains(req.flowId)) {
+            return Promise.ofException(new CancellationException("Flow of " + req + " is cancelled"));
+        }
+
+        var lookup = rangeCache.decompose(req.from, req.to);
+        if (lookup.gaps().isEmpty()) {
+            logger.info(">> Found result of {} in cache", req);
+            return Promise.of(lookup.cachedSum());
+        }
+
+        // -> Only the parts which are not in cache are calculated
+        var promises = lookup.gaps().stream()
+                             .map(gap -> calculateRange(
+                                 new CalcRequest(gap.from(), gap.to(), req.depth, req.deadline, req.flowId, req.priority)
+                             ))
+                             .toList();
+        return Promises.toList(promises)
+                       .map(lst -> lookup.cachedSum() + MyUtils.sum(lst));
+    }
+
+    private Promise<Long> calculateRange(CalcRequest req) {
+        if (req.to < 4) {
+            logger.info(">> This is a small task: {}. Calculate it right now", req);
+            return calculate(new WorkerTask(req.from, req.to, req.deadline, req.flowId, req.priority));
+        }
+
+        // -> A sub-request of the fan-out tree only owns a share of the cluster
+        var share = (int) Math.pow(TREE_FANOUT, req.depth);
+        var step  = splitPlanner.planStep(
+            req.from,
+            req.to,
+            Math.max(1, this.seedNodeManager.countNodes(ServiceType.WORKER) / share),
+            bigScheduler.getQueueDepth()
+        );
+        var tasks = WorkerTask.breakBig(req, step);
+
+        if (tasks.size() > MAX_LEAF_TASKS && req.depth < MAX_TREE_DEPTH) {
+            logger.info(">> This is a huge task: {}. Split it into sub-requests for other nodes", req);
+            var promises = req.split(TREE_FANOUT).stream()
+                              .map(sub -> {
+                                  var node    = this.seedNodeManager.route(ServiceType.WORKER);
+                                  var promise = this.seedNodeManager.sendRequest(node, sub)
+                                                                    .cast(Long.class)
+                                                                    .whenResult(v -> rangeCache.put(sub.from, sub.to, v));
+                                  onFlowCancel(req.flowId, promise, () -> cancelFlow(node, req.flowId));
+                                  return promise;
+                              })
+                              .toList();
+            return Promises.toList(promises)
+                           .map(MyUtils::sum);
+        }
+
+        logger.info(">> This is a big task: {}. Split it and send them to cluster", req);
+        return WORK_STEALING ? dispatchStealing(tasks, req) : dispatch(tasks, req);
+    }
+
+    /* Sums of a range: WorkerTasks go through the schedulers here and as WorkerTaskBatch frames to others */
+    private Promise<Long> dispatch(List<WorkerTask> tasks, CalcRequest req) {
+        return dispatch(ResultSlots.ofSums(tasks, req.deadline), rangeRunner, req.flowId);
+    }
+
+    /* Keep as many tasks as local executor can start right now, send the rest to other workers in batches */
+    private <T, V> Promise<V> dispatch(ResultSlots<T, V> slots, TaskRunner<T, V> runner, long flowId) {
+        var others = this.seedNodeManager.getNodes(ServiceType.WORKER)
+                                         .stream()
+                                         .filter(node -> !node.equals(selfNode))
+                                         .toList();
+        var idle       = bigScheduler.getIdle();
+        var count      = slots.tasks.size();
+        var localCount = others.isEmpty() ? count : Math.min(count, Math.max(0, idle));
+
+        var localIndexes  = new ArrayList<Integer>();
+        var remoteIndexes = new ArrayList<Integer>();
+        for (int i = 0; i < count; i++) {
+            slots.startAttempt(i);
+            (i < localCount ? localIndexes : remoteIndexes).add(i);
+        }
+
+        runOn(slots, runner, selfNode, localIndexes);
+        if (!remoteIndexes.isEmpty()) {
+            var nodes  = this.seedNodeManager.route(ServiceType.WORKER, remoteIndexes.size(), node -> !node.equals(selfNode));
+            var groups = new LinkedHashMap<SeedNode, List<Integer>>();
+            for (int i = 0; i < remoteIndexes.size(); i++) {
+                groups.computeIfAbsent(nodes.get(i), $ -> new ArrayList<>()).add(remoteIndexes.get(i));
+            }
+            groups.forEach((node, indexes) -> runOn(slots, runner, node, indexes));
+        }
+
+        abandonAtDeadline(slots, runner);
+        onFlowCancel(flowId, slots.result, () -> abandon(slots, runner, new CancellationException("Flow " + flowId + " is cancelled")));
+        return slots.result;
+    }
+
+    /* Nobody reads the result after the deadline: fail the request and cancel its outstanding batches */
+    private <T, V> void abandonAtDeadline(ResultSlots<T, V> slots, TaskRunner<T, V> runner) {
+        if (slots.getDeadline() <= 0 || slots.result.isComplete()) return;
+
+        var timer = eventloop.scheduleBackground(
+            Instant.ofEpochMilli(slots.getDeadline()),
+            () -> {
+                logger.warn(">> Request is abandoned at deadline, cancel {} outstanding batches", slots.getOutstanding().size());
+                abandon(slots, runner, new TimeoutException("Deadline is exceeded"));
+            }
+        );
+        slots.result.whenComplete(timer::cancel);
+    }
+
+    private <T, V> void abandon(ResultSlots<T, V> slots, TaskRunner<T, V> runner, Exception reason) {
+        var outstanding = slots.getOutstanding();
+        slots.fail(reason);
+        outstanding.forEach((batchId, node) -> runner.cancel(node, batchId));
+    }
+
+    /* Run cleanup if the flow is cancelled before until completes */
+    private void onFlowCancel(long flowId, Promise<?> until, Runnable cleanup) {
+        if (until.isComplete()) return;
+
+        this.flowCleanups.computeIfAbsent(flowId, $ -> new ArrayList<>()).add(cleanup);
+        until.whenComplete(() -> {
+            var cleanups = this.flowCleanups.get(flowId);
+            if (cleanups == null) return;
+            cleanups.remove(cleanup);
+            if (cleanups.isEmpty()) this.flowCleanups.remove(flowId);
+        });
+    }
+
+    private void cancelFlow(SeedNode node, long flowId) {
+        if (node.equals(selfNode)) {
+            cancelFlow(flowId);
+            return;
+        }
+
+        try {
+            this.seedNodeManager.sendRequest(node, new CalcCancel(flowId));
+        } catch (RuntimeException e) {
+            logger.warn(">> Cannot cancel flow {} on {}, node is gone: {}", flowId, node, e.getMessage());
+        }
+    }
+
+    /* Flows are not bound to a shard, so every shard drops the work of the flow */
+    private void cancelFlow(long flowId) {
+        onEveryShard((WorkerService shard) -> {
+            if (!shard.cancelledFlows.add(flowId)) return;
+
+            var cleanups = shard.flowCleanups.remove(flowId);
+            logger.info(">> Flow {} is cancelled, stop {} running parts", flowId, cleanups == null ? 0 : cleanups.size());
+            if (cleanups != null) cleanups.forEach(Runnable::run);
+            shard.eventloop.scheduleBackground(
+                Instant.now().plusMillis(CANCELLED_FLOW_TTL_MS),
+                () -> shard.cancelledFlows.remove(flowId)
+            );
+        });
+    }
+
+    private <T, V> void runOn(ResultSlots<T, V> slots, TaskRunner<T, V> runner, SeedNode node, List<Integer> indexes) {
+        runOn(slots, runner, node, indexes, ThreadLocalRandom.current().nextLong(), true);
+    }
+
+    /* Run tasks of given slots on a node: local executor for this node, one batch for others */
+    private <T, V> Promise<Void> runOn(
+        ResultSlots<T, V> slots,
+        TaskRunner<T, V> runner,
+        SeedNode node,
+        List<Integer> indexes,
+        long batchId,
+        boolean hedgeable
+    ) {
+        if (indexes.isEmpty()) return Promise.complete();
+
+        slots.onBatchStart(batchId, node);
+        if (node.equals(selfNode)) {
+            activeBatches.add(batchId);
+            var promises = indexes.stream()
+                                  .map(i -> runner.runLocal(slots.tasks.get(i), batchId)
+                                                  .whenComplete((res, e) -> {
+                                                      if (e == null) slots.fill(i, res);
+                                                      else retry(slots, runner, List.of(i), node, e);
+                                                  }))
+                                  .toList();
+            // -> The batch only ends when every task ended, so cancelBatch still reaches tasks after a failed one
+            var settled = promises.stream()
+                                  .map(promise -> promise.map(($, e) -> (Void) null))
+                                  .toList();
+            return Promises.all(settled)
+                           .whenComplete(() -> {
+                               slots.onBatchEnd(batchId);
+                               finishBatch(batchId);
+                           })
+                           .then(() -> Promises.all(promises));
+        }
+
+        var tasks = indexes.stream().map(slots.tasks::get).toList();
+        var size  = runner.hedgeSize(tasks);
+        var start = System.currentTimeMillis();
+
+        if (size >= 0) hedgingPolicy.onSent();
+        Promise<Void> done =
+            runner.runRemote(node, tasks, batchId)
+                  .whenComplete((res, e) -> {
+                      slots.onBatchEnd(batchId);
+                      if (e == null) {
+                          if (size >= 0) hedgingPolicy.record(size, System.currentTimeMillis() - start);
+                          for (int k = 0; k < indexes.size(); k++) slots.fill(indexes.get(k), res.get(k));
+                      } else {
+                          retry(slots, runner, indexes, node, e);
+                      }
+                  })
+                  .toVoid();
+
+        if (hedgeable && size >= 0) scheduleHedge(slots, runner, node, indexes, batchId, size, done);
+        return done;
+    }
+
+    /* Once a batch runs past the latency percentile of its size, duplicate its unfinished tasks on another node */
+    private <T, V> void scheduleHedge(
+        ResultSlots<T, V> slots,
+        TaskRunner<T, V> runner,
+        SeedNode node,
+        List<Integer> indexes,
+        long batchId,
+        long size,
+        Promise<Void> done
+    ) {
+        var delay = hedgingPolicy.hedgeDelayMs(size);
+        if (!hedgingPolicy.isEnabled() || delay < 0) return;
+
+        var timer = eventloop.scheduleBackground(
+            Instant.now().plusMillis(delay),
+            () -> {
+                var pending = indexes.stream().filter(i -> !slots.isFilled(i)).toList();
+                if (pending.isEmpty() || slots.result.isComplete() || !hedgingPolicy.tryHedge()) return;
+
+                var others = this.seedNodeManager.getNodes(ServiceType.WORKER)
+                                                 .stream()
+                                                 .anyMatch(n -> !n.equals(node));
+                if (!others) return;
+
+                var other   = this.seedNodeManager.route(ServiceType.WORKER, 1, n -> !n.equals(node)).get(0);
+                var hedgeId = ThreadLocalRandom.current().nextLong();
+                logger.info(">> Batch {} on {} is slow after {}ms, hedge {} tasks to {}", batchId, node, delay, pending.size(), other);
+
+                // -> First answer wins, the other batch is cancelled
+                runOn(slots, runner, other, pending, hedgeId, false).whenResult(() -> runner.cancel(node, batchId));
+                done.whenResult(() -> runner.cancel(other, hedgeId));
+            }
+        );
+        done.whenComplete(timer::cancel);
+    }
+
+    private void cancelBatch(SeedNode node, long batchId) {
+        if (node.equals(selfNode)) {
+            cancelLocalBatch(batchId);
+            return;
+        }
+
+        try {
+            this.seedNodeManager.sendRequest(node, new WorkerTaskCancel(batchId));
+        } catch (RuntimeException e) {
+            logger.warn(">> Cannot cancel batch {} on {}, node is gone: {}", batchId, node, e.getMessage());
+        }
+    }
+
+    /* Batch ids are not bound to a shard, so every shard drops the batch if it runs it */
+    private void cancelLocalBatch(long batchId) {
+        onEveryShard((WorkerService shard) -> {
+            if (shard.activeBatches.contains(batchId)) shard.cancelledBatches.add(batchId);
+        });
+    }
+
+    private void finishBatch(long batchId) {
+        activeBatches.remove(batchId);
+        cancelledBatches.remove(batchId);
+    }
+
+    /* Send failed tasks again to another live worker, each task at most MAX_ATTEMPTS times */
+    private <T, V> void retry(ResultSlots<T, V> slots, TaskRunner<T, V> runner, List<Integer> indexes, SeedNode failedNode, Exception e) {
+        if (slots.result.isComplete()) return; // -> Cancelled, expired or failed by another task, nobody waits for these
+
+        logger.warn(">> {} tasks failed on {}: {}", indexes.size(), failedNode, e.getMessage());
+        slots.planRetry(
+            indexes,
+            failedNode,
+            e,
+            MAX_ATTEMPTS,
+            exclude -> this.seedNodeManager.route(ServiceType.WORKER, 1, exclude).get(0)
+        ).forEach((node, lst) -> runOn(slots, runner, node, lst));
+    }
+
+    /* Queue tasks on this node, then let other workers and local threads pull them when they are free */
+    private Promise<Long> dispatchStealing(List<WorkerTask> tasks, CalcRequest req) {
+        var job    = stealCoordinator.submit(nextShardId(), tasks);
+        var invite = new StealJob(job.id, selfNode.nodeAddr);
+
+        onFlowCancel(req.flowId, job.result, () -> stealCoordinator.fail(job.id, new CancellationException("Flow " + req.flowId + " is cancelled")));
+        if (req.deadline > 0) {
+            var timer = eventloop.scheduleBackground(
+                Instant.ofEpochMilli(req.deadline),
+                () -> stealCoordinator.fail(job.id, new TimeoutException("Deadline is exceeded"))
+            );
+            job.result.whenComplete(timer::cancel);
+        }
+
+        this.seedNodeManager.getNodes(ServiceType.WORKER)
+                            .stream()
+                            .filter(node -> !node.equals(selfNode))
+                            .forEach(node -> this.seedNodeManager.sendRequest(node, invite)
+                                                                 .whenException(e -> {
+                                                                     // -> Node is gone, its tasks go back to the queue
+                                                                     logger.warn(">> Worker {} left job {}: {}", node, job.id, e.getMessage());
+                                                                     if (stealCoordinator.requeue(job.id, node.nodeAddr)) {
+                                                                         pullLocal(job.id);
+                                                                     }
+                                                                 }));
+
+        var localPullers = Math.max(1, bigScheduler.getIdle());
+        for (int i = 0; i < localPullers; i++) pullLocal(job.id);
+
+        return job.result;
+    }
+
+    private void pullLocal(long jobId) {
+        var tasks = stealCoordinator.take(jobId, selfNode.nodeAddr, 1);
+        if (tasks.isEmpty()) return;
+
+        var task = tasks.get(0);
+        calculate(task)
+            .whenComplete((res, e) -> {
+                if (e == null) {
+                    stealCoordinator.complete(jobId, selfNode.nodeAddr, tasks, new long[]{res});
+                    pullLocal(jobId);
+                } else {
+                    stealCoordinator.fail(jobId, e);
+                }
+            });
+    }
+
+    private Promise<Integer> pullRemote(SeedNode origin, long jobId, List<WorkerTask> done, long[] results, int processed) {
+        var pull = new TaskPull(jobId, selfNode.nodeAddr, bigPool.getConcurrency(), done, results);
+        return this.seedNodeManager.sendRequest(origin, pull)
+                                   .cast(WorkerTaskBatch.class)
+                                   .then(batch -> {
+                                       if (batch.tasks.isEmpty()) return Promise.of(processed);
+
+                                       var promises = batch.tasks.stream()
+                                                                 .map(task -> calculate(task))
+                                                                 .toList();
+                                       return Promises.toList(promises)
+                                                      .then(lst -> pullRemote(
+                                                          origin,
+                                                          jobId,
+                                                          batch.tasks,
+                                                          toArray(lst),
+                                                          processed + batch.tasks.size()
+                                                      ));
+                                   });
+    }
+
+    /* Results of a batch are sent as a primitive array */
+    private static long[] toArray(List<Long> values) {
+        var array = new long[values.size()];
+        for (int i = 0; i < array.length; i++) array[i] = values.get(i);
+        return array;
+    }
+
+    /* A null value is a failed range */
+    private CalcBatchResult toBatchResult(List<Long> values) {
+        var array  = new long[values.size()];
+        var failed = new boolean[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            if (values.get(i) == null) failed[i] = true;
+            else array[i] = values.get(i);
+        }
+        return new CalcBatchResult(array, currentLoad(), failed);
+    }
+
+    /* Piggybacked on batch responses so senders can route around a saturated worker, tasks wait in the schedulers */
+    private NodeLoad currentLoad() {
+        return new NodeLoad(
+            smallScheduler.getQueueDepth() + bigScheduler.getQueueDepth(),
+            (float) (smallPool.getActiveCount() + bigPool.getActiveCount()) /
+            (smallPool.getConcurrency() + bigPool.getConcurrency())
         );
     }
 
+    private Promise<Long> calculate(WorkerTask task) {
+        return calculate(task, NO_BATCH);
+    }
+
+    /* Expired or cancelled tasks are dropped before they take an executor thread, also after waiting in queue */
+    private Promise<Long> calculate(WorkerTask task, long batchId) {
+        if (task.isExpired()) {
+            return Promise.ofException(new TimeoutException("Deadline of " + task + " is exceeded"));
+        }
+
+        // -> Waiting tasks are ordered by priority and fair share of their request, not by arrival
+        var scheduler = task.elements() <= SMALL_TASK_ELEMENTS ? smallScheduler : bigScheduler;
+        return scheduler.submit(
+            task.flowId,
+            task.priority,
+            task.elements(),
+            () -> {
+                if (cancelledBatches.contains(batchId)) {
+                    throw new CancellationException("Batch " + batchId + " is cancelled");
+                }
+                if (cancelledFlows.contains(task.flowId)) {
+                    throw new CancellationException("Flow " + task.flowId + " is cancelled");
+                }
+                if (task.isExpired()) {
+                    throw new TimeoutException("Deadline of " + task + " is exceeded");
+                }
+
+                var start = System.nanoTime();
+                var sum   = MyUtils.sumOf(task.from, task.to);
+                splitPlanner.recordTask(task.elements(), System.nanoTime() - start);
+                return sum;
+            }
+        ).whenResult(sum -> rangeCache.put(task.from, task.to, sum));
+    }
+
     @Override
-    protected Map<NodeType, List<Class<?>>> getConnectionClassTypes() {
-        return Map.of(
-            ServiceType.WORKER, List.of(CalcRequest.class, Integer.class, WorkerTask.class)
+    public void startService() throws IOException {
+        super.startService();
+        logExecutionMetrics();
+    }
+
+    private void logExecutionMetrics() {
+        this.eventloop.scheduleBackground(
+            Instant.now().plusSeconds(60), // -> Run every 60 seconds
+            () -> {
+                logger.info(">> {}", smallPool);
+                logger.info(">> {}", bigPool);
+                logger.info(
+                    ">> Waiting tasks: small={}, big={}, rejected: small={}, big={}",
+                    smallScheduler.getQueueDepth(),
+                    bigScheduler.getQueueDepth(),
+                    smallScheduler.getRejectedCount(),
+                    bigScheduler.getRejectedCount()
+                );
+                logExecutionMetrics();
+            }
         );
     }
 
+    @Override
+    protected Map<NodeType, List<Class<?>>> getConnectionClassTypes() {
+        return Map.of(ServiceType.WORKER, MESSAGE_TYPES);
+    }
+
+    /* Executor threads are split between the reactors of this node */
+    private static int coresPerReactor() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / ReactorGroup.getReactors());
+    }
+
+    /* How sub-tasks of one kind run on this node and on others, so dispatch, retries, deadlines and cancels are shared */
+    private interface TaskRunner<T, V> {
+        Promise<V> runLocal(T task, long batchId);
+
+        /* One result per task, in order of tasks */
+        Promise<List<V>> runRemote(SeedNode node, List<T> tasks, long batchId);
+
+        /* Stop a batch nobody waits for, the node may be gone already */
+        void cancel(SeedNode node, long batchId);
+
+        /* Size of tasks for hedging, or -1 if batches of this kind are never hedged */
+        long hedgeSize(List<T> tasks);
+    }
+
+    /* Tasks of a range, sent to other workers as one WorkerTaskBatch frame */
+    private class RangeRunner implements TaskRunner<WorkerTask, Long> {
+        @Override
+        public Promise<Long> runLocal(WorkerTask task, long batchId) {
+            return calculate(task, batchId);
+        }
+
+        @Override
+        public Promise<List<Long>> runRemote(SeedNode node, List<WorkerTask> tasks, long batchId) {
+            return seedNodeManager.sendRequest(node, new WorkerTaskBatch(tasks, batchId))
+                                  .cast(WorkerBatchResult.class)
+                                  .map(res -> {
+                                      var values = new ArrayList<Long>(tasks.size());
+                                      for (int k = 0; k < tasks.size(); k++) {
+                                          rangeCache.put(tasks.get(k).from, tasks.get(k).to, res.values[k]);
+                                          values.add(res.values[k]);
+                                      }
+                                      return values;
+                                  });
+        }
+
+        @Override
+        public void cancel(SeedNode node, long batchId) {
+            cancelBatch(node, batchId);
+        }
+
+        @Override
+        public long hedgeSize(List<WorkerTask> tasks) {
+            return tasks.stream().mapToLong(WorkerTask::elements).sum();
+        }
+    }
+
+    /**
+     * Partitions of one job, a partition is its own RPC frame so partitions of a batch are pipelined on the
+     * connection of the node. A node cancels all partitions of the job at once, by its flow, so they are not hedged
+     */
+    private class JobRunner<I, S, P> implements TaskRunner<S, P> {
+        private final JobType<I, S, P> job;
+        private final long             jobId;
+
+        JobRunner(JobType<I, S, P> job, long jobId) {
+            this.job   = job;
+            this.jobId = jobId;
+        }
+
+        @Override
+        public Promise<P> runLocal(S partition, long batchId) {
+            return mapPartition(job, partition);
+        }
+
+        @Override
+        public Promise<List<P>> runRemote(SeedNode node, List<S> partitions, long batchId) {
+            var promises = partitions.stream()
+                                     .map(partition -> seedNodeManager.sendRequest(node, partition).cast(job.partialType()))
+                                     .toList();
+            return Promises.toList(promises);
+        }
+
+        @Override
+        public void cancel(SeedNode node, long batchId) {
+            cancelFlow(node, jobId);
+        }
+
+        @Override
+        public long hedgeSize(List<S> partitions) {
+            return -1;
+        }
+    }
+
+    /* Run with -Dservice.reactors=N to serve RPC on N eventloops */
     public static void main(String[] args) throws IOException {
-        var eventloop     = Eventloop.create();
         var discoveryAddr = new InetSocketAddress("localhost", 9000);
-        var workerService = WorkerService.create(eventloop, discoveryAddr);
-
-        workerService.startService();
-        eventloop.run();
+        ReactorGroup.run(eventloop -> WorkerService.create(eventloop, discoveryAddr));
     }
 }
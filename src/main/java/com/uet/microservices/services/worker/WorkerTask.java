@@ -1,5 +1,6 @@
 package com.uet.microservices.services.worker;
 
+import com.uet.microservices.services.master.CalcRequest;
 import io.activej.serializer.annotations.Deserialize;
 import io.activej.serializer.annotations.Serialize;
 
@@ -7,18 +8,45 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class WorkerTask {
-    public @Serialize(order = 0) int from;
-    public @Serialize(order = 1) int to;
+    public @Serialize(order = 0) int          from;
+    public @Serialize(order = 1) int          to;
+    public @Serialize(order = 2) long         deadline; // -> Epoch millis after which nobody waits for the result, 0 is no deadline
+    public @Serialize(order = 3) long         flowId;   // -> Id of the originating request, used for fair scheduling
+    public @Serialize(order = 4) TaskPriority priority;
 
-    public WorkerTask(@Deserialize("from") int from, @Deserialize("to") int to) {
-        this.from = from;
-        this.to   = to;
+    public WorkerTask(
+        @Deserialize("from") int from,
+        @Deserialize("to") int to,
+        @Deserialize("deadline") long deadline,
+        @Deserialize("flowId") long flowId,
+        @Deserialize("priority") TaskPriority priority
+    ) {
+        this.from     = from;
+        this.to       = to;
+        this.deadline = deadline;
+        this.flowId   = flowId;
+        this.priority = priority;
     }
 
-    public static List<WorkerTask> breakBig(int from, int to, int step) {
+    public WorkerTask(int from, int to) {
+        this(from, to, 0, 0, TaskPriority.INTERACTIVE);
+    }
+
+    public long elements() {
+        return (long) to - from + 1;
+    }
+
+    public boolean isExpired() {
+        return deadline > 0 && System.currentTimeMillis() > deadline;
+    }
+
+    /* Tasks of a request keep its deadline, flow and priority */
+    public static List<WorkerTask> breakBig(CalcRequest req, int step) {
+        var from = req.from;
+        var to   = req.to;
         var diff = to - from;
         if (diff <= step) {
-            return List.of(new WorkerTask(from, to));
+            return List.of(new WorkerTask(from, to, req.deadline, req.flowId, req.priority));
         } else {
             var tasks = new ArrayList<WorkerTask>();
             var cur   = from;
@@ -26,10 +54,10 @@ public class WorkerTask {
             while (true) {
                 var next = cur + step;
                 if (next >= to) {
-                    tasks.add(new WorkerTask(cur, to));
+                    tasks.add(new WorkerTask(cur, to, req.deadline, req.flowId, req.priority));
                     break;
                 } else {
-                    tasks.add(new WorkerTask(cur, next));
+                    tasks.add(new WorkerTask(cur, next, req.deadline, req.flowId, req.priority));
                     cur = next + 1;
                 }
             }
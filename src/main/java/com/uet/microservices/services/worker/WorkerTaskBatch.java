@@ -0,0 +1,27 @@
+package com.uet.microservices.services.worker;
+
+import io.activej.serializer.annotations.Deserialize;
+import io.activej.serializer.annotations.Serialize;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/* Many WorkerTasks for the same node in one RPC frame. Reply is WorkerBatchResult with the same order */
+public class WorkerTaskBatch {
+    public @Serialize(order = 0) List<WorkerTask> tasks;
+    public @Serialize(order = 1) long             id; // -> Random id, used to cancel the batch on its node
+
+    public WorkerTaskBatch(@Deserialize("tasks") List<WorkerTask> tasks, @Deserialize("id") long id) {
+        this.tasks = tasks;
+        this.id    = id;
+    }
+
+    public WorkerTaskBatch(List<WorkerTask> tasks) {
+        this(tasks, ThreadLocalRandom.current().nextLong());
+    }
+
+    @Override
+    public String toString() {
+        return "WorkerTaskBatch(" + id + ", " + tasks + ")";
+    }
+}
@@ -0,0 +1,18 @@
+package com.uet.microservices.services.worker;
+
+import io.activej.serializer.annotations.Deserialize;
+import io.activej.serializer.annotations.Serialize;
+
+/* Drop tasks of a batch which have not started yet, e.g. the batch lost a hedge race */
+public class WorkerTaskCancel {
+    public @Serialize(order = 0) long batchId;
+
+    public WorkerTaskCancel(@Deserialize("batchId") long batchId) {
+        this.batchId = batchId;
+    }
+
+    @Override
+    public String toString() {
+        return "WorkerTaskCancel(" + batchId + ")";
+    }
+}
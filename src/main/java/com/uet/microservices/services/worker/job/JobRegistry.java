@@ -0,0 +1,44 @@
+package com.uet.microservices.services.worker.job;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registered job types. The message types of the jobs follow the registration order, so every node
+ * must register the same jobs in the same order.
+ */
+public class JobRegistry {
+    private final List<JobType<?, ?, ?>> jobs;
+
+    private JobRegistry(List<JobType<?, ?, ?>> jobs) {
+        this.jobs = jobs;
+    }
+
+    public static JobRegistry of(JobType<?, ?, ?>... jobs) {
+        return new JobRegistry(List.of(jobs));
+    }
+
+    public List<JobType<?, ?, ?>> getJobs() {
+        return jobs;
+    }
+
+    /* The registered job of an input type, throw if none is registered or its partial type differs */
+    @SuppressWarnings("unchecked")
+    public <I, P> JobType<I, ?, P> get(Class<I> inputType, Class<P> partialType) {
+        for (var job : jobs) {
+            if (job.inputType() == inputType && job.partialType() == partialType) return (JobType<I, ?, P>) job;
+        }
+        throw new RuntimeException("No registered job for " + inputType.getSimpleName() + " -> " + partialType.getSimpleName());
+    }
+
+    /* Given base message types followed by input, partition and partial types of each job, a type shared by jobs is listed once */
+    public List<Class<?>> withMessageTypes(List<Class<?>> baseTypes) {
+        var types = new ArrayList<Class<?>>(baseTypes);
+        for (var job : jobs) {
+            for (var type : List.of(job.inputType(), job.partitionType(), job.partialType())) {
+                if (!types.contains(type)) types.add(type);
+            }
+        }
+        return List.copyOf(types);
+    }
+}
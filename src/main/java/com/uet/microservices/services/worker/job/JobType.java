@@ -0,0 +1,36 @@
+package com.uet.microservices.services.worker.job;
+
+import java.util.List;
+
+/**
+ * A computation the cluster can run, registered in WorkerService.JOBS.
+ * - I: input of a job, sent by a client to any WORKER node
+ * - S: one partition of the input, mapped on a single node
+ * - P: partial result of partitions, combined into the result of the job
+ * All three types must be serializable by ActiveJ, they are appended to the WORKER message types.
+ */
+public interface JobType<I, S, P> {
+    Class<I> inputType();
+
+    Class<S> partitionType();
+
+    Class<P> partialType();
+
+    /* Split an input into at most parts partitions, never an empty list. Every partition carries jobId */
+    List<S> split(I input, int parts, long jobId);
+
+    /* Epoch millis after which nobody waits for the result of the job, 0 is no deadline */
+    long deadline(I input);
+
+    /* jobId given to split, partitions of one job share a fair-queuing flow on every node */
+    long jobId(S partition);
+
+    /* Blocking work on one partition, runs on an executor thread */
+    P map(S partition);
+
+    /* Must be associative, partials are combined in any grouping */
+    P combine(P left, P right);
+
+    /* Result of an input without partitions, neutral element of combine */
+    P zero();
+}
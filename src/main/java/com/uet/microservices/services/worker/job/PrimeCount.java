@@ -0,0 +1,17 @@
+package com.uet.microservices.services.worker.job;
+
+import io.activej.serializer.annotations.Deserialize;
+import io.activej.serializer.annotations.Serialize;
+
+public class PrimeCount {
+    public @Serialize(order = 0) long count;
+
+    public PrimeCount(@Deserialize("count") long count) {
+        this.count = count;
+    }
+
+    @Override
+    public String toString() {
+        return "PrimeCount(" + count + ")";
+    }
+}
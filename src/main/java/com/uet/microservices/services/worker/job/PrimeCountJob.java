@@ -0,0 +1,78 @@
+package com.uet.microservices.services.worker.job;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/* Example job: count the primes in [from, to] */
+public class PrimeCountJob implements JobType<PrimeCountRequest, PrimeCountRange, PrimeCount> {
+    private static final int MIN_PARTITION_SIZE = 10_000; // -> Smaller partitions cost more in RPC than in work
+
+    @Override
+    public Class<PrimeCountRequest> inputType() {
+        return PrimeCountRequest.class;
+    }
+
+    @Override
+    public Class<PrimeCountRange> partitionType() {
+        return PrimeCountRange.class;
+    }
+
+    @Override
+    public Class<PrimeCount> partialType() {
+        return PrimeCount.class;
+    }
+
+    @Override
+    public List<PrimeCountRange> split(PrimeCountRequest input, int parts, long jobId) {
+        var size       = Math.max(0L, (long) input.to - input.from + 1);
+        var count      = (int) Math.max(1, Math.min(parts, size / MIN_PARTITION_SIZE));
+        var partitions = new ArrayList<PrimeCountRange>(count);
+        var cur        = (long) input.from;
+
+        for (int i = 0; i < count; i++) {
+            var len = size / count + (i < size % count ? 1 : 0);
+            partitions.add(new PrimeCountRange((int) cur, (int) (cur + len - 1), jobId));
+            cur += len;
+        }
+
+        return partitions;
+    }
+
+    @Override
+    public long deadline(PrimeCountRequest input) {
+        return input.deadline;
+    }
+
+    @Override
+    public long jobId(PrimeCountRange partition) {
+        return partition.jobId;
+    }
+
+    @Override
+    public PrimeCount map(PrimeCountRange partition) {
+        var count = 0L;
+        for (long n = Math.max(2, partition.from); n <= partition.to; n++) {
+            if (isPrime(n)) count++;
+        }
+        return new PrimeCount(count);
+    }
+
+    @Override
+    public PrimeCount combine(PrimeCount left, PrimeCount right) {
+        return new PrimeCount(left.count + right.count);
+    }
+
+    @Override
+    public PrimeCount zero() {
+        return new PrimeCount(0);
+    }
+
+    private static boolean isPrime(long n) {
+        if (n < 4) return n >= 2;
+        if (n % 2 == 0) return false;
+        for (long d = 3; d * d <= n; d += 2) {
+            if (n % d == 0) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,21 @@
+package com.uet.microservices.services.worker.job;
+
+import io.activej.serializer.annotations.Deserialize;
+import io.activej.serializer.annotations.Serialize;
+
+public class PrimeCountRange {
+    public @Serialize(order = 0) int  from;
+    public @Serialize(order = 1) int  to;
+    public @Serialize(order = 2) long jobId;
+
+    public PrimeCountRange(@Deserialize("from") int from, @Deserialize("to") int to, @Deserialize("jobId") long jobId) {
+        this.from  = from;
+        this.to    = to;
+        this.jobId = jobId;
+    }
+
+    @Override
+    public String toString() {
+        return "PrimeCountRange(" + from + ", " + to + ")";
+    }
+}
@@ -0,0 +1,25 @@
+package com.uet.microservices.services.worker.job;
+
+import io.activej.serializer.annotations.Deserialize;
+import io.activej.serializer.annotations.Serialize;
+
+public class PrimeCountRequest {
+    public @Serialize(order = 0) int  from;
+    public @Serialize(order = 1) int  to;
+    public @Serialize(order = 2) long deadline; // -> Epoch millis after which nobody waits for the result, 0 is no deadline
+
+    public PrimeCountRequest(
+        @Deserialize("from") int from,
+        @Deserialize("to") int to,
+        @Deserialize("deadline") long deadline
+    ) {
+        this.from     = from;
+        this.to       = to;
+        this.deadline = deadline;
+    }
+
+    @Override
+    public String toString() {
+        return "PrimeCountRequest(" + from + ", " + to + ")";
+    }
+}
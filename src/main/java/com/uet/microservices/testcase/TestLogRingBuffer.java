@@ -0,0 +1,76 @@
+package com.uet.microservices.testcase;
+
+import com.uet.microservices.services.log.store.LogRingBuffer;
+
+import java.util.concurrent.CountDownLatch;
+
+/* Many producers and one consumer on LogRingBuffer, runs without a cluster */
+public class TestLogRingBuffer {
+    private static final int PRODUCERS             = 4;
+    private static final int ELEMENTS_PER_PRODUCER = 200_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        // -> Capacity must be a power of two
+        try {
+            new LogRingBuffer<Long>(3);
+            throw new IllegalStateException("Capacity 3 is accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        // -> Full buffer rejects, a poll frees one slot, FIFO over several laps
+        var ring = new LogRingBuffer<Integer>(4);
+        check(ring.isEmpty() && ring.poll() == null, "New buffer is not empty");
+        for (int i = 0; i < 4; i++) check(ring.offer(i), "Offer " + i + " is rejected");
+        check(!ring.offer(4), "Full buffer accepts an offer");
+        check(ring.poll() == 0, "Poll is not FIFO");
+        check(ring.offer(4), "Freed slot is not reused");
+        for (int i = 1; i <= 4; i++) check(ring.poll() == i, "Poll is not FIFO after a lap");
+        check(ring.isEmpty() && ring.poll() == null, "Drained buffer is not empty");
+
+        // -> Every element of every producer arrives exactly once, in order per producer
+        var shared = new LogRingBuffer<Long>(1 << 10);
+        var start  = new CountDownLatch(1);
+        for (int p = 0; p < PRODUCERS; p++) {
+            var producer = p;
+            var thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (long i = 0; i < ELEMENTS_PER_PRODUCER; i++) {
+                    var element = ((long) producer << 32) | i;
+                    while (!shared.offer(element)) Thread.onSpinWait();
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        var next     = new long[PRODUCERS];
+        var received = 0L;
+        var deadline = System.currentTimeMillis() + 60_000;
+        start.countDown();
+        while (received < (long) PRODUCERS * ELEMENTS_PER_PRODUCER) {
+            check(System.currentTimeMillis() < deadline, "Only " + received + " elements are received");
+            var element = shared.poll();
+            if (element == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            var producer = (int) (element >>> 32);
+            var index    = element & 0xFFFFFFFFL;
+            check(index == next[producer], "Producer " + producer + " sent " + next[producer] + ", received " + index);
+            next[producer]++;
+            received++;
+        }
+        check(shared.isEmpty(), "Buffer is not empty after all elements");
+
+        System.out.println(">> TestLogRingBuffer OK");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new IllegalStateException(message);
+    }
+}
@@ -0,0 +1,61 @@
+package com.uet.microservices.testcase;
+
+import com.uet.microservices.services.log.store.PostingList;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+/* Skip pointer decoding of PostingList against a brute force scan, runs without a cluster */
+public class TestPostingList {
+    public static void main(String[] args) {
+        var random = new Random(42);
+
+        // -> Sizes around the skip interval (64), gaps from dense to multi-byte varints
+        for (var size : new int[]{0, 1, 63, 64, 65, 128, 1000, 10_000}) {
+            for (var maxGap : new int[]{1, 3, 200, 100_000}) {
+                var values = new TreeSet<Integer>();
+                var list   = new PostingList();
+                var value  = random.nextInt(10);
+                for (int i = 0; i < size; i++) {
+                    values.add(value);
+                    list.add(value);
+                    list.add(value); // -> Repeated value is stored once
+                    value += 1 + random.nextInt(maxGap);
+                }
+
+                var view = list.view();
+                var max  = values.isEmpty() ? 10 : values.last() + 10;
+                for (int k = 0; k < 200; k++) {
+                    var from = random.nextInt(max);
+                    var to   = from + random.nextInt(max - from + 1);
+                    check(view, values, from, to);
+                }
+                check(view, values, 0, Integer.MAX_VALUE);
+                check(view, values, max, max);
+                check(view, values, 10, 5);
+            }
+        }
+
+        // -> Values added after a view are not seen by it
+        var list = new PostingList();
+        for (int i = 0; i < 100; i++) list.add(i * 2);
+        var view = list.view();
+        for (int i = 100; i < 200; i++) list.add(i * 2);
+        if (view.toArray(0, Integer.MAX_VALUE).length != 100) throw new IllegalStateException("View sees later values");
+
+        System.out.println(">> TestPostingList OK");
+    }
+
+    private static void check(PostingList.View view, TreeSet<Integer> values, int from, int to) {
+        var expected = from >= to
+            ? new int[0]
+            : values.subSet(from, to).stream().mapToInt(Integer::intValue).toArray();
+        var actual = view.toArray(from, to);
+        if (!Arrays.equals(expected, actual)) {
+            throw new IllegalStateException(
+                "toArray(" + from + ", " + to + ") = " + Arrays.toString(actual) + ", expected " + Arrays.toString(expected)
+            );
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.uet.microservices.testcase;
+
+import com.uet.microservices.lib.model.NodeAddr;
+import com.uet.microservices.lib.model.SeedNode;
+import com.uet.microservices.services.ServiceType;
+import com.uet.microservices.services.worker.ResultSlots;
+import com.uet.microservices.services.worker.WorkerTask;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* Retry planning of a failed batch, runs without a cluster */
+public class TestResultSlots {
+    private static final SeedNode NODE_1 = new SeedNode("worker-1", ServiceType.WORKER, new NodeAddr("localhost", 1));
+    private static final SeedNode NODE_2 = new SeedNode("worker-2", ServiceType.WORKER, new NodeAddr("localhost", 2));
+
+    public static void main(String[] args) {
+        // -> A failed batch is sent again, away from the node it failed on
+        var slots  = ResultSlots.ofSums(List.of(new WorkerTask(1, 10), new WorkerTask(11, 20)), 0);
+        var groups = slots.planRetry(List.of(0, 1), NODE_1, new IOException("Connection lost"), 3, exclude -> {
+            check(!exclude.test(NODE_1), "Retry is routed to the node it failed on");
+            return NODE_2;
+        });
+        check(groups.equals(Map.of(NODE_2, List.of(0, 1))), "Failed tasks are not sent again: " + groups);
+
+        // -> The flow is cancelled, its batches fail because of the cancel and nothing is sent again
+        var cancelled = ResultSlots.ofSums(List.of(new WorkerTask(1, 10), new WorkerTask(11, 20)), 0);
+        var routed    = new AtomicInteger();
+        cancelled.fail(new CancellationException("Flow 1 is cancelled"));
+        var resent = cancelled.planRetry(List.of(0, 1), NODE_1, new CancellationException("Batch 1 is cancelled"), 3, exclude -> {
+            routed.incrementAndGet();
+            return NODE_2;
+        });
+        check(resent.isEmpty() && routed.get() == 0, "Tasks of a cancelled flow are sent again: " + resent);
+
+        // -> Out of attempts: the request fails, a late failure of another batch is not sent again either
+        var exhausted = ResultSlots.ofSums(List.of(new WorkerTask(1, 10), new WorkerTask(11, 20)), 0);
+        exhausted.startAttempt(0);
+        check(exhausted.planRetry(List.of(0), NODE_1, new IOException("Failed"), 1, exclude -> NODE_2).isEmpty(), "Retried past max attempts");
+        check(exhausted.result.isException(), "Request does not fail after max attempts");
+        check(exhausted.planRetry(List.of(1), NODE_1, new IOException("Failed"), 3, exclude -> NODE_2).isEmpty(), "Late failure is sent again");
+
+        System.out.println(">> TestResultSlots OK");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new IllegalStateException(message);
+    }
+}
@@ -1,6 +1,7 @@
 package com.uet.microservices.testcase;
 
 import com.uet.microservices.services.master.CalcRequest;
+import com.uet.microservices.services.worker.WorkerService;
 import com.uet.microservices.utils.MyUtils;
 import io.activej.eventloop.Eventloop;
 import io.activej.rpc.client.RpcClient;
@@ -12,14 +13,14 @@ public class TestWorkerService {
     public static void main(String[] args) {
         var eventloop = Eventloop.create();
         var client = RpcClient.builder(eventloop)
-                              .withMessageTypes(CalcRequest.class, Integer.class)
+                              .withMessageTypes(WorkerService.MESSAGE_TYPES)
                               .withStrategy(RpcStrategies.server(new InetSocketAddress(59412)))
                               .build();
         eventloop.submit(() -> {
             client.start().whenComplete(() -> {
                 var start = System.currentTimeMillis();
                 client.sendRequest(new CalcRequest(0, 3))
-                      .cast(Integer.class)
+                      .cast(Long.class)
                       .whenResult(res -> {
                           var end      = System.currentTimeMillis();
                           var duration = end - start;
@@ -27,7 +28,7 @@ public class TestWorkerService {
                       });
 
                 client.sendRequest(new CalcRequest(1, 40))
-                      .cast(Integer.class)
+                      .cast(Long.class)
                       .whenResult(res -> {
                           var end      = System.currentTimeMillis();
                           var duration = end - start;
@@ -2,6 +2,7 @@ package com.uet.microservices.utils;
 
 import java.io.IOException;
 import java.net.ServerSocket;
+import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
@@ -22,8 +23,8 @@ public class MyUtils {
      * This function is for simulating a blocking task
      * Calculate sum of numbers from 'from' to 'to'
      */
-    public static int sumOf(int from, int to) {
-        int sum = 0;
+    public static long sumOf(int from, int to) {
+        long sum = 0;
         for (int i = from; i <= to; i++) {
             try {
                 Thread.sleep(500);
@@ -34,4 +35,24 @@ public class MyUtils {
         }
         return sum;
     }
+
+    /**
+     * Same result as sumOf in O(1): the range is an arithmetic series, n * (from + to) / 2.
+     * One of n and (from + to) is always even, so the division is exact before multiplying.
+     * The sum of an int range is below 2^62 in absolute value, so it always fits in a long
+     */
+    public static long sumOfSeries(int from, int to) {
+        if (from > to) return 0;
+
+        long n    = (long) to - from + 1;
+        long ends = (long) from + to;
+        return n % 2 == 0 ? n / 2 * ends : n * (ends / 2);
+    }
+
+    /* Partial sums of disjoint parts of one int range, so the total fits in a long like sumOfSeries */
+    public static long sum(List<Long> values) {
+        long sum = 0;
+        for (var v : values) sum += v;
+        return sum;
+    }
 }